@@ -0,0 +1,114 @@
+package com.ecom.security.benchmark;
+
+import com.ecom.security.config.JwtConfig;
+import com.ecom.security.config.RsakeysConfig;
+import com.ecom.security.config.SigningKeys;
+import com.ecom.security.config.TechKeyRing;
+import com.ecom.security.model.Role;
+import com.ecom.security.model.User;
+import com.ecom.security.security.JwtService;
+import com.ecom.security.security.SigninMetrics;
+import com.ecom.security.security.TokenEpochService;
+import com.ecom.security.service.TokenMicroService;
+import com.ecom.security.service.UserDetailsImpl;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.RSAKey;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Chemins chauds du service, construits comme les beans de JwtConfig (sans contexte Spring ni base) :
+//  - generateJwt : signature d'un token utilisateur (JwtService)
+//  - tokenService : token technique servi depuis le cache (TokenMicroService)
+//  - userJwtDecode / techJwtDecode : décodage via les beans userJwtDecoder / techJwtDecoder (token déjà en cache)
+//  - userAuthorities / userDetailsAuthorities : construction du scope et des GrantedAuthority
+// ./mvnw -P benchmark test-compile exec:exec -Djmh.args="SecurityHotPathsBenchmark -prof gc"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecurityHotPathsBenchmark {
+
+    private JwtService jwtService;
+    private TokenMicroService tokenMicroService;
+    private JwtDecoder userJwtDecoder;
+    private JwtDecoder techJwtDecoder;
+    private User user;
+    private UserDetailsImpl userDetails;
+    private String userToken;
+    private String techToken;
+
+    @Setup
+    public void setUp() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RSAKey pemKey = (RSAKey) SigningKeys.generate(JWSAlgorithm.RS256, "user-key");
+        JwtConfig jwtConfig = new JwtConfig(new RsakeysConfig(pemKey.toRSAPublicKey(), pemKey.toRSAPrivateKey()), "RS256", null, true, "RS256");
+        //l'époque n'est lue que dans la table en mémoire : pas besoin de repository
+        TokenEpochService tokenEpochService = new TokenEpochService(null);
+
+        TechKeyRing techKeyRing = TechKeyRing.inMemory(JWSAlgorithm.RS256, meterRegistry);
+        tokenMicroService = new TokenMicroService(jwtConfig.techJwtEncoder(techKeyRing), meterRegistry);
+        ReflectionTestUtils.setField(tokenMicroService, "securityServiceUrl", "http://localhost:8091/api");
+        ReflectionTestUtils.setField(tokenMicroService, "tokenTtl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(tokenMicroService, "refreshBefore", Duration.ofMinutes(5));
+
+        jwtService = new JwtService(jwtConfig, null, null, null, tokenMicroService, tokenEpochService, null,
+                TransactionOperations.withoutTransaction(), new SigninMetrics(meterRegistry), null);
+        userJwtDecoder = jwtConfig.userJwtDecoder(meterRegistry, 10_000, tokenEpochService);
+        techJwtDecoder = jwtConfig.techJwtDecoder(techKeyRing, meterRegistry, 10_000);
+
+        user = new User();
+        user.setId(1L);
+        user.setName("Regular User");
+        user.setUsername("user");
+        user.setEmail("user@domain.com");
+        user.setActive(true);
+        user.setRoles(List.of(new Role(1, "USER"), new Role(2, "ADMIN")));
+        userDetails = new UserDetailsImpl(user);
+
+        userToken = jwtService.generateJwt(user).get(JwtService.BAERER);
+        techToken = tokenMicroService.tokenService();
+    }
+
+    @Benchmark
+    public Map<String, String> generateJwt() {
+        return jwtService.generateJwt(user);
+    }
+
+    @Benchmark
+    public String tokenService() {
+        return tokenMicroService.tokenService();
+    }
+
+    @Benchmark
+    public Jwt userJwtDecode() {
+        return userJwtDecoder.decode(userToken);
+    }
+
+    @Benchmark
+    public Jwt techJwtDecode() {
+        return techJwtDecoder.decode(techToken);
+    }
+
+    @Benchmark
+    public String userAuthorities() {
+        return user.getAuthorities();
+    }
+
+    @Benchmark
+    public Collection<? extends GrantedAuthority> userDetailsAuthorities() {
+        return userDetails.getAuthorities();
+    }
+}
@@ -0,0 +1,65 @@
+package com.ecom.security.benchmark;
+
+import com.ecom.security.config.PrebuiltJwtEncoder;
+import com.ecom.security.config.SigningKeys;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Débit de signature et de vérification par algorithme, sur la même machine
+// ./mvnw -P benchmark test-compile exec:exec -Djmh.args="SignatureAlgorithmBenchmark"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignatureAlgorithmBenchmark {
+
+    @Param({"RS256", "ES256", "EdDSA"})
+    public String algorithm;
+
+    private JwtEncoder encoder;
+    private JwtDecoder decoder;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        JWSAlgorithm jwsAlgorithm = SigningKeys.algorithm(algorithm);
+        JWK jwk = SigningKeys.generate(jwsAlgorithm, "bench-key");
+        encoder = new PrebuiltJwtEncoder(jwk, jwsAlgorithm);
+        decoder = SigningKeys.decoder(new ImmutableJWKSet<>(new JWKSet(jwk.toPublicJWK())), Set.of(jwsAlgorithm));
+        token = sign();
+    }
+
+    @Benchmark
+    public String sign() {
+        Instant now = Instant.now();
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .subject("user@domain.com")
+                .issuedAt(now)
+                .expiresAt(now.plus(30, ChronoUnit.MINUTES))
+                .issuer("security-service")
+                .claim("scope", "USER")
+                .claim("id", 1L)
+                .build();
+        return encoder.encode(JwtEncoderParameters.from(claims)).getTokenValue();
+    }
+
+    @Benchmark
+    public Jwt verify() {
+        return decoder.decode(token);
+    }
+}
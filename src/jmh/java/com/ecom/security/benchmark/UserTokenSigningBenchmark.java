@@ -0,0 +1,88 @@
+package com.ecom.security.benchmark;
+
+import com.ecom.security.config.PrebuiltJwtEncoder;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+// Coût d'un login réussi côté signature :
+//  - legacyLogin : encoder reconstruit à chaque appel et token signé deux fois (ancien JwtService.generate)
+//  - prebuiltLogin : encoder construit une fois et token signé une seule fois
+// ./mvnw -P benchmark test-compile exec:exec -Djmh.args="UserTokenSigningBenchmark -prof gc"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserTokenSigningBenchmark {
+
+    private RSAPublicKey publicKey;
+    private RSAPrivateKey privateKey;
+    private JwtEncoder prebuiltEncoder;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        publicKey = (RSAPublicKey) keyPair.getPublic();
+        privateKey = (RSAPrivateKey) keyPair.getPrivate();
+        prebuiltEncoder = new PrebuiltJwtEncoder(userJwk(), JWSAlgorithm.RS256);
+    }
+
+    @Benchmark
+    public String legacyLogin() {
+        String stored = legacyEncoder().encode(JwtEncoderParameters.from(claims())).getTokenValue();
+        String returned = legacyEncoder().encode(JwtEncoderParameters.from(claims())).getTokenValue();
+        return stored.length() > returned.length() ? stored : returned;
+    }
+
+    @Benchmark
+    public String prebuiltLogin() {
+        return prebuiltEncoder.encode(JwtEncoderParameters.from(claims())).getTokenValue();
+    }
+
+    private JwtEncoder legacyEncoder() {
+        JWKSource<SecurityContext> source = new ImmutableJWKSet<>(new JWKSet(userJwk()));
+        return new NimbusJwtEncoder(source);
+    }
+
+    private JWK userJwk() {
+        return new RSAKey.Builder(publicKey)
+                .privateKey(privateKey)
+                .keyID("user-key")
+                .build();
+    }
+
+    private static JwtClaimsSet claims() {
+        Instant instant = Instant.now();
+        return JwtClaimsSet.builder()
+                .subject("user@domain.com")
+                .issuedAt(instant)
+                .expiresAt(instant.plus(30, ChronoUnit.MINUTES))
+                .issuer("security-service")
+                .claim("scope", "USER")
+                .claim("name", "Regular User")
+                .claim("username", "user")
+                .claim("id", 1L)
+                .build();
+    }
+}
@@ -0,0 +1,298 @@
+package com.ecom.security.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// Rejoue le mélange de trafic : la première moitié des utilisateurs se connecte en boucle (/signin),
+// la seconde garde un token utilisateur pour /token et /users/{id} (un /signin révoquerait ses tokens)
+final class LoadDriver implements AutoCloseable {
+
+    static final List<String> OPERATIONS = List.of("signin", "new-device", "token", "user", "oauth2-token");
+    private static final List<String> RECORDED = List.of("signin", "new-device", "signin-validation", "token", "user", "oauth2-token");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final String baseUrl;
+    private final StubServices stubs;
+    private final LoadTest.Settings settings;
+    private final ExecutorService workers;
+    private final int signers;
+    private final String[] bearers;
+    private final String[] operations;
+    private final int[] cumulativeWeights;
+
+    LoadDriver(String baseUrl, StubServices stubs, LoadTest.Settings settings) {
+        if (settings.users() < 2) {
+            throw new IllegalArgumentException("Il faut au moins 2 utilisateurs");
+        }
+        this.baseUrl = baseUrl;
+        this.stubs = stubs;
+        this.settings = settings;
+        this.workers = Executors.newFixedThreadPool(settings.concurrency());
+        this.signers = settings.users() / 2;
+        this.bearers = new String[settings.users() + 1];
+        this.operations = settings.mix().keySet().toArray(String[]::new);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += settings.mix().get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    // ─── PRÉPARATION ──────────────────────────────────────────────────────────────
+
+    //chaque utilisateur enregistre et active son appareil ; la seconde moitié récupère un token
+    void seed() throws Exception {
+        String techToken = techToken();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (long id = 1; id <= settings.users(); id++) {
+            long userId = id;
+            tasks.add(() -> {
+                HttpResponse<String> signin = signin(userId, device(userId));
+                String uuid = (String) json(signin).get("uuid");
+                Long deviceId = stubs.pendingDevice(StubServices.email(userId));
+                if (signin.statusCode() != 403 || uuid == null || deviceId == null) {
+                    throw new IllegalStateException("Enregistrement de l'appareil impossible pour " + userId + " : " + signin.body());
+                }
+                expect(200, send(post("/_internal/login-activation-deviceId",
+                        Map.of("userId", userId, "deviceId", deviceId, "active", true), techToken)));
+                if (userId > signers) {
+                    bearers[(int) userId] = (String) json(expect(200, send(post("/signin-validation", Map.of("uuid", uuid), null)))).get("bearer");
+                }
+                return null;
+            });
+        }
+        for (Future<Void> result : workers.invokeAll(tasks)) {
+            result.get();
+        }
+        System.out.printf("%d utilisateurs préparés (%d en connexion, %d avec token)%n", settings.users(), signers, settings.users() - signers);
+    }
+
+    private String techToken() throws IOException, InterruptedException {
+        return (String) json(expect(200, send(clientCredentials()))).get("access_token");
+    }
+
+    //token technique demandé comme le font les autres microservices (client_credentials, secret en Basic)
+    private HttpRequest clientCredentials() {
+        String credentials = Base64.getEncoder().encodeToString(
+                (LoadTest.CLIENT_ID + ":" + LoadTest.CLIENT_SECRET).getBytes(StandardCharsets.UTF_8));
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/oauth2/token"))
+                .header("Authorization", "Basic " + credentials)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString("grant_type=client_credentials"))
+                .build();
+    }
+
+    // ─── TRAFIC ───────────────────────────────────────────────────────────────────
+
+    Report run(Duration duration) throws InterruptedException {
+        Map<String, Recorder> latencies = new LinkedHashMap<>();
+        Map<String, LongAdder> errors = new LinkedHashMap<>();
+        RECORDED.forEach(operation -> {
+            latencies.put(operation, new Recorder(3));
+            errors.put(operation, new LongAdder());
+        });
+
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Callable<Void>> clients = new ArrayList<>();
+        for (int i = 0; i < settings.concurrency(); i++) {
+            clients.add(() -> {
+                while (System.nanoTime() < deadline) {
+                    execute(pick(), latencies, errors);
+                }
+                return null;
+            });
+        }
+        workers.invokeAll(clients);
+
+        List<OperationStats> stats = new ArrayList<>();
+        latencies.forEach((operation, recorder) ->
+                stats.add(new OperationStats(operation, recorder.getIntervalHistogram(), errors.get(operation).sum())));
+        return new Report(duration, stats);
+    }
+
+    private void execute(String operation, Map<String, Recorder> latencies, Map<String, LongAdder> errors) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (operation) {
+            case "signin" -> {
+                long userId = 1 + random.nextInt(signers);
+                timed("signin", 200, () -> signin(userId, device(userId)), latencies, errors);
+            }
+            case "new-device" -> {
+                long userId = 1 + random.nextInt(signers);
+                HttpResponse<String> signin = timed("new-device", 403, () -> signin(userId, UUID.randomUUID().toString()), latencies, errors);
+                if (signin != null) {
+                    Object uuid = json(signin).get("uuid");
+                    timed("signin-validation", 200, () -> send(post("/signin-validation", Map.of("uuid", uuid), null)), latencies, errors);
+                }
+            }
+            case "token" -> {
+                int reader = signers + 1 + random.nextInt(settings.users() - signers);
+                timed("token", 200, () -> send(get("/token", bearers[reader])), latencies, errors);
+            }
+            case "user" -> {
+                int reader = signers + 1 + random.nextInt(settings.users() - signers);
+                timed("user", 200, () -> send(get("/users/" + reader, bearers[reader])), latencies, errors);
+            }
+            case "oauth2-token" -> timed("oauth2-token", 200, () -> send(clientCredentials()), latencies, errors);
+            default -> throw new IllegalStateException(operation);
+        }
+    }
+
+    private interface Call {
+        HttpResponse<String> send() throws IOException, InterruptedException;
+    }
+
+    //seules les réponses attendues entrent dans l'histogramme (en microsecondes), les autres sont des erreurs
+    private static HttpResponse<String> timed(String operation, int expectedStatus, Call call,
+                                              Map<String, Recorder> latencies, Map<String, LongAdder> errors) {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = call.send();
+            if (response.statusCode() == expectedStatus) {
+                latencies.get(operation).recordValue((System.nanoTime() - start) / 1_000);
+                return response;
+            }
+        } catch (IOException e) {
+            // compté comme erreur
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        errors.get(operation).increment();
+        return null;
+    }
+
+    private String pick() {
+        int value = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    // ─── HTTP ─────────────────────────────────────────────────────────────────────
+
+    private HttpResponse<String> signin(long userId, String device) throws IOException, InterruptedException {
+        return send(post("/signin", Map.of("username", StubServices.email(userId), "password", StubServices.PASSWORD, "devices", device), null));
+    }
+
+    private static String device(long userId) {
+        return "load-device-" + userId;
+    }
+
+    private HttpRequest post(String path, Object body, String bearer) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)));
+        if (bearer != null) {
+            builder.header("Authorization", "Bearer " + bearer);
+        }
+        return builder.build();
+    }
+
+    private HttpRequest get(String path, String bearer) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", "Bearer " + bearer)
+                .GET()
+                .build();
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return http.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpResponse<String> expect(int status, HttpResponse<String> response) {
+        if (response.statusCode() != status) {
+            throw new IllegalStateException(response.request().uri() + " : " + response.statusCode() + " " + response.body());
+        }
+        return response;
+    }
+
+    private Map<?, ?> json(HttpResponse<String> response) {
+        try {
+            return objectMapper.readValue(response.body(), Map.class);
+        } catch (IOException e) {
+            return Map.of();
+        }
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+
+    // ─── RAPPORT ──────────────────────────────────────────────────────────────────
+
+    record OperationStats(String operation, Histogram histogram, long errors) {
+    }
+
+    record Report(Duration duration, List<OperationStats> operations) {
+
+        void print(PrintStream out) {
+            out.printf("%n%-18s %9s %7s %10s %10s %10s %10s %10s%n", "opération", "requêtes", "erreurs", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+            Histogram total = new Histogram(3);
+            long totalErrors = 0;
+            for (OperationStats stats : operations) {
+                if (stats.histogram().getTotalCount() + stats.errors() > 0) {
+                    line(out, stats.operation(), stats.histogram(), stats.errors());
+                }
+                total.add(stats.histogram());
+                totalErrors += stats.errors();
+            }
+            line(out, "total", total, totalErrors);
+        }
+
+        private void line(PrintStream out, String name, Histogram histogram, long errors) {
+            out.printf("%-18s %9d %7d %10.1f %10.2f %10.2f %10.2f %10.2f%n", name, histogram.getTotalCount(), errors,
+                    histogram.getTotalCount() / (duration.toMillis() / 1000.0),
+                    millis(histogram, 50), millis(histogram, 99), millis(histogram, 99.9), histogram.getMaxValue() / 1000.0);
+        }
+
+        //porte de release : taux d'erreur global et p99 de chaque opération
+        boolean check(long maxP99Ms, double maxErrorRate, PrintStream out) {
+            boolean passed = true;
+            long requests = 0;
+            long errors = 0;
+            for (OperationStats stats : operations) {
+                requests += stats.histogram().getTotalCount() + stats.errors();
+                errors += stats.errors();
+                if (maxP99Ms > 0 && millis(stats.histogram(), 99) > maxP99Ms) {
+                    out.printf("ÉCHEC : p99 de %s à %.2f ms (seuil %d ms)%n", stats.operation(), millis(stats.histogram(), 99), maxP99Ms);
+                    passed = false;
+                }
+            }
+            double errorRate = requests == 0 ? 1.0 : (double) errors / requests;
+            if (errorRate > maxErrorRate) {
+                out.printf("ÉCHEC : taux d'erreur %.4f (seuil %.4f)%n", errorRate, maxErrorRate);
+                passed = false;
+            }
+            out.println(passed ? "OK : seuils respectés" : "Seuils dépassés");
+            return passed;
+        }
+
+        private static double millis(Histogram histogram, double percentile) {
+            return histogram.getValueAtPercentile(percentile) / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.ecom.security.loadtest;
+
+import com.ecom.security.SecurityApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Test de charge de bout en bout : l'application démarre sur H2, users-service et validation-service
+// sont remplacés par des stubs locaux, puis un mélange de /signin, /signin-validation, /token et /users/{id}
+// est rejoué pendant "duration" ; débit et p50 / p99 / p999 sont affichés par opération.
+// Code retour 1 si un seuil (max-p99-ms, max-error-rate) est dépassé : utilisable comme porte de release.
+// ./mvnw -P loadtest test-compile exec:exec -Dloadtest.args="duration=PT60S concurrency=64 users-latency-ms=40"
+public final class LoadTest {
+
+    static final String CLIENT_ID = "loadtest";
+    static final String CLIENT_SECRET = "loadtest-secret";
+
+    private LoadTest() {
+    }
+
+    // paramètres "clé=valeur" passés en arguments, avec des valeurs par défaut raisonnables pour un portable
+    record Settings(Duration duration, Duration warmup, int concurrency, int users, Map<String, Integer> mix,
+                    StubServices.Fault usersFault, StubServices.Fault validationFault,
+                    long maxP99Ms, double maxErrorRate) {
+
+        static Settings parse(String[] args) {
+            Map<String, String> values = new LinkedHashMap<>();
+            values.put("duration", "PT30S");
+            values.put("warmup", "PT10S");
+            values.put("concurrency", "32");
+            values.put("users", "200");
+            values.put("mix", "signin:40,new-device:10,token:30,user:20");
+            values.put("users-latency-ms", "20");
+            values.put("users-jitter-ms", "10");
+            values.put("users-error-rate", "0");
+            values.put("validation-latency-ms", "50");
+            values.put("validation-jitter-ms", "20");
+            values.put("validation-error-rate", "0");
+            values.put("max-p99-ms", "0");
+            values.put("max-error-rate", "0.01");
+            for (String arg : args) {
+                int separator = arg.indexOf('=');
+                if (separator < 0 || !values.containsKey(arg.substring(0, separator))) {
+                    throw new IllegalArgumentException("Paramètre inconnu : " + arg + " (attendus : " + values.keySet() + ")");
+                }
+                values.put(arg.substring(0, separator), arg.substring(separator + 1));
+            }
+
+            Map<String, Integer> mix = new LinkedHashMap<>();
+            for (String entry : values.get("mix").split(",")) {
+                String[] weight = entry.trim().split(":");
+                if (!LoadDriver.OPERATIONS.contains(weight[0])) {
+                    throw new IllegalArgumentException("Opération inconnue dans mix : " + weight[0] + " (attendues : " + LoadDriver.OPERATIONS + ")");
+                }
+                mix.put(weight[0], Integer.valueOf(weight[1]));
+            }
+            return new Settings(
+                    Duration.parse(values.get("duration")),
+                    Duration.parse(values.get("warmup")),
+                    Integer.parseInt(values.get("concurrency")),
+                    Integer.parseInt(values.get("users")),
+                    mix,
+                    fault(values, "users"),
+                    fault(values, "validation"),
+                    Long.parseLong(values.get("max-p99-ms")),
+                    Double.parseDouble(values.get("max-error-rate")));
+        }
+
+        private static StubServices.Fault fault(Map<String, String> values, String service) {
+            return new StubServices.Fault(
+                    Long.parseLong(values.get(service + "-latency-ms")),
+                    Long.parseLong(values.get(service + "-jitter-ms")),
+                    Double.parseDouble(values.get(service + "-error-rate")));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = Settings.parse(args);
+        boolean passed;
+        try (StubServices stubs = StubServices.start(settings.users(), settings.usersFault(), settings.validationFault());
+             ServletWebServerApplicationContext app = boot(stubs)) {
+            String baseUrl = "http://127.0.0.1:" + app.getWebServer().getPort() + "/api";
+            LoadDriver driver = new LoadDriver(baseUrl, stubs, settings);
+            driver.seed();
+            stubs.enableFaults();
+
+            System.out.printf("Chauffe pendant %s...%n", settings.warmup());
+            driver.run(settings.warmup());
+            System.out.printf("Mesure pendant %s, %d clients, mix %s%n", settings.duration(), settings.concurrency(), settings.mix());
+            LoadDriver.Report report = driver.run(settings.duration());
+            report.print(System.out);
+            passed = report.check(settings.maxP99Ms(), settings.maxErrorRate(), System.out);
+            driver.close();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    //les arguments de ligne de commande passent devant application.properties
+    //(sur le classpath de test, c'est celui de src/test/resources qui est chargé : on reprend ici les réglages de production)
+    private static ServletWebServerApplicationContext boot(StubServices stubs) {
+        return (ServletWebServerApplicationContext) new SpringApplicationBuilder(SecurityApplication.class)
+                .run("--server.port=0",
+                        "--server.servlet.context-path=/api",
+                        "--spring.jpa.open-in-view=false",
+                        "--spring.datasource.url=jdbc:h2:mem:loadtest;MODE=MySQL;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.driverClassName=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.cloud.gcp.sql.enabled=false",
+                        "--rsa.public-key=classpath:certs/keyPublic-dev.pem",
+                        "--rsa.private-key=classpath:certs/keyPrivate-dev.pem",
+                        "--users.service.url=" + stubs.usersServiceUrl(),
+                        "--validation.service.url=" + stubs.validationServiceUrl(),
+                        "--security.service.url=http://127.0.0.1/api",
+                        "--client.id=" + CLIENT_ID,
+                        "--client.secret=" + CLIENT_SECRET,
+                        //trousseau technique persisté, comme en production
+                        "--security.jwt.tech.key-ring.secret=loadtest-key-ring",
+                        //tout le trafic vient de 127.0.0.1 : le limiteur de /signin fausserait la mesure
+                        "--security.signin.rate-limit.enabled=false",
+                        "--logging.level.root=WARN");
+    }
+}
@@ -0,0 +1,151 @@
+package com.ecom.security.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Remplaçants locaux de users-service et validation-service (HttpServer du JDK),
+// avec latence et taux d'erreur injectés pour reproduire un service distant lent ou instable
+final class StubServices implements AutoCloseable {
+
+    static final String PASSWORD = "password";
+
+    // latence fixe + aléa, et part des appels qui répondent 503
+    record Fault(long latencyMs, long jitterMs, double errorRate) {
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, Map<String, Object>> usersByEmail = new ConcurrentHashMap<>();
+    private final Map<Long, Map<String, Object>> usersById = new ConcurrentHashMap<>();
+    //dernier appareil (id en base) pour lequel une validation a été demandée, par email
+    private final Map<String, Long> pendingDevices = new ConcurrentHashMap<>();
+    private final AtomicLong validationIds = new AtomicLong();
+    //les pannes ne sont injectées qu'une fois les utilisateurs préparés
+    private volatile boolean faultsEnabled;
+
+    private StubServices(int userCount, Fault usersFault, Fault validationFault) throws IOException {
+        //un seul hash BCrypt partagé : le coût de vérification reste celui de la production
+        String passwordHash = new BCryptPasswordEncoder().encode(PASSWORD);
+        for (long id = 1; id <= userCount; id++) {
+            Map<String, Object> user = Map.of(
+                    "id", id,
+                    "name", "Load User " + id,
+                    "username", "load" + id,
+                    "password", passwordHash,
+                    "email", email(id),
+                    "active", true,
+                    "roles", List.of(Map.of("id", 1, "name", "USER")));
+            usersByEmail.put(email(id), user);
+            usersById.put(id, user);
+        }
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 512);
+        server.setExecutor(executor);
+        server.createContext("/users-service/", exchange -> handle(exchange, usersFault, this::users));
+        server.createContext("/validation-service/", exchange -> handle(exchange, validationFault, this::validations));
+        server.start();
+    }
+
+    static StubServices start(int userCount, Fault usersFault, Fault validationFault) throws IOException {
+        return new StubServices(userCount, usersFault, validationFault);
+    }
+
+    void enableFaults() {
+        faultsEnabled = true;
+    }
+
+    static String email(long id) {
+        return "load" + id + "@load.test";
+    }
+
+    String usersServiceUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/users-service";
+    }
+
+    String validationServiceUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/validation-service";
+    }
+
+    Long pendingDevice(String email) {
+        return pendingDevices.get(email);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // ─── ROUTES ───────────────────────────────────────────────────────────────────
+
+    private Object users(HttpExchange exchange, String path) {
+        if (path.startsWith("/_internal/users-login/")) {
+            return usersByEmail.get(path.substring("/_internal/users-login/".length()));
+        }
+        if (path.startsWith("/users/")) {
+            return usersById.get(Long.valueOf(path.substring("/users/".length())));
+        }
+        return null;
+    }
+
+    private Object validations(HttpExchange exchange, String path) throws IOException {
+        if (!path.equals("/_internal/validation-send")) {
+            return null;
+        }
+        Map<?, ?> request = objectMapper.readValue(exchange.getRequestBody(), Map.class);
+        if (request.get("deviceId") instanceof Number deviceId) {
+            pendingDevices.put((String) request.get("email"), deviceId.longValue());
+        }
+        return Map.of("id", validationIds.incrementAndGet());
+    }
+
+    // ─── INJECTION ────────────────────────────────────────────────────────────────
+
+    private interface Route {
+        Object respond(HttpExchange exchange, String path) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, Fault injected, Route route) throws IOException {
+        Fault fault = faultsEnabled ? injected : new Fault(0, 0, 0);
+        try (exchange) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long delay = fault.latencyMs() + (fault.jitterMs() > 0 ? random.nextLong(fault.jitterMs() + 1) : 0);
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            if (random.nextDouble() < fault.errorRate()) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            Object body = route.respond(exchange, path.substring(path.indexOf('/', 1)));
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] json = objectMapper.writeValueAsString(body).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, json.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(json);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,14 +1,17 @@
 package com.ecom.security;
 
 import com.ecom.security.config.RsakeysConfig;
+import com.ecom.security.config.TechClientsConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableFeignClients
-@EnableConfigurationProperties(RsakeysConfig.class)
+@EnableScheduling
+@EnableConfigurationProperties({RsakeysConfig.class, TechClientsConfig.class})
 public class SecurityApplication {
 
 	public static void main(String[] args) {
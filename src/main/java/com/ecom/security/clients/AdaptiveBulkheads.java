@@ -0,0 +1,103 @@
+package com.ecom.security.clients;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//Ajuste en continu la taille des bulkheads "users" et "validation" (resilience4j.bulkhead.instances.*)
+//à partir des latences vues par le circuit breaker du même nom ; un appel refusé part dans le fallback du client
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "security.bulkhead.adaptive.enabled", havingValue = "true", matchIfMissing = true)
+public class AdaptiveBulkheads {
+
+    private final BulkheadRegistry bulkheadRegistry;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final MeterRegistry meterRegistry;
+    private final List<String> names;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final long minSamples;
+    private final Map<String, GradientLimit> limits = new LinkedHashMap<>();
+
+    public AdaptiveBulkheads(BulkheadRegistry bulkheadRegistry, CircuitBreakerRegistry circuitBreakerRegistry, MeterRegistry meterRegistry,
+                             @Value("${security.bulkhead.adaptive.names:users,validation}") List<String> names,
+                             @Value("${security.bulkhead.adaptive.min-limit:2}") int minLimit,
+                             @Value("${security.bulkhead.adaptive.max-limit:100}") int maxLimit,
+                             @Value("${security.bulkhead.adaptive.tolerance:2.0}") double tolerance,
+                             @Value("${security.bulkhead.adaptive.smoothing:0.2}") double smoothing,
+                             @Value("${security.bulkhead.adaptive.min-samples:20}") long minSamples) {
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.meterRegistry = meterRegistry;
+        this.names = names;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.minSamples = minSamples;
+    }
+
+    @PostConstruct
+    void register() {
+        for (String name : names) {
+            Bulkhead bulkhead = bulkheadRegistry.bulkhead(name);
+            GradientLimit limit = new GradientLimit(bulkhead.getBulkheadConfig().getMaxConcurrentCalls(),
+                    minLimit, maxLimit, tolerance, smoothing, minSamples);
+            limits.put(name, limit);
+
+            CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(name);
+            circuitBreaker.getEventPublisher()
+                    .onSuccess(event -> limit.record(event.getElapsedDuration().toNanos()))
+                    .onError(event -> limit.record(event.getElapsedDuration().toNanos()));
+
+            Counter rejected = Counter.builder("security.bulkhead.rejected")
+                    .description("Appels refusés par le bulkhead (limite de concurrence atteinte)")
+                    .tag("name", name)
+                    .register(meterRegistry);
+            bulkhead.getEventPublisher().onCallRejected(event -> {
+                rejected.increment();
+                limit.rejected();
+            });
+            Gauge.builder("security.bulkhead.limit", limit, GradientLimit::limit)
+                    .description("Limite de concurrence calculée")
+                    .tag("name", name)
+                    .register(meterRegistry);
+            Gauge.builder("security.bulkhead.baseline.latency", limit, GradientLimit::baselineMillis)
+                    .description("Latence de référence (ms) servant au calcul de la limite")
+                    .tag("name", name)
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${security.bulkhead.adaptive.interval:PT5S}")
+    public void adjust() {
+        limits.forEach((name, limit) -> {
+            Bulkhead bulkhead = bulkheadRegistry.bulkhead(name);
+            int current = bulkhead.getBulkheadConfig().getMaxConcurrentCalls();
+            int next = limit.update();
+            if (next != current) {
+                bulkhead.changeConfig(BulkheadConfig.from(bulkhead.getBulkheadConfig()).maxConcurrentCalls(next).build());
+                log.info("Bulkhead {} : limite {} -> {} (latence de référence {} ms)", name, current, next, Math.round(limit.baselineMillis()));
+            }
+        });
+    }
+}
@@ -0,0 +1,76 @@
+package com.ecom.security.clients;
+
+import java.util.concurrent.atomic.LongAdder;
+
+//Limite de concurrence d'un client distant, recalculée à partir de la latence observée (gradient)
+//latence de référence = moyenne lissée sur le long terme ; si la latence courante la dépasse de plus de "tolerance",
+//la limite baisse proportionnellement ; si la latence est saine et que des appels ont été rejetés, elle remonte
+public final class GradientLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final long minSamples;
+
+    private final LongAdder latencySumNanos = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    //accédés uniquement par le thread de recalcul
+    private double baselineNanos;
+    private double limit;
+
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing, long minSamples) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.minSamples = minSamples;
+        this.limit = clamp(initialLimit);
+    }
+
+    public void record(long latencyNanos) {
+        latencySumNanos.add(latencyNanos);
+        samples.increment();
+    }
+
+    public void rejected() {
+        rejections.increment();
+    }
+
+    //appelé à intervalle fixe ; renvoie la nouvelle limite (inchangée si trop peu d'appels depuis le dernier calcul)
+    public synchronized int update() {
+        long count = samples.sum();
+        if (count < minSamples) {
+            return (int) limit;
+        }
+        double averageNanos = (double) latencySumNanos.sumThenReset() / samples.sumThenReset();
+        long rejected = rejections.sumThenReset();
+
+        if (baselineNanos == 0) {
+            baselineNanos = averageNanos;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * baselineNanos / averageNanos));
+        //la référence ne suit que les latences saines : une panne prolongée ne devient pas la nouvelle normale
+        if (gradient == 1.0) {
+            baselineNanos = baselineNanos * 0.9 + averageNanos * 0.1;
+        }
+        //marge de croissance en racine de la limite, seulement quand la limite a réellement bridé des appels
+        double headroom = rejected > 0 ? Math.sqrt(limit) : 0;
+        double target = limit * gradient + headroom;
+        limit = clamp(limit * (1 - smoothing) + target * smoothing);
+        return (int) limit;
+    }
+
+    public int limit() {
+        return (int) limit;
+    }
+
+    public double baselineMillis() {
+        return baselineNanos / 1_000_000;
+    }
+
+    private double clamp(double value) {
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+}
@@ -2,6 +2,9 @@ package com.ecom.security.clients;
 
 
 import com.ecom.security.model.User;
+import com.ecom.security.response.ServiceUnavailableException;
+import feign.FeignException;
+import io.github.resilience4j.bulkhead.annotation.Bulkhead;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -17,21 +20,29 @@ public interface UserRestClient {
 
     @GetMapping("/users/{id}")
     @CircuitBreaker(name="users", fallbackMethod = "getDefaultUser")
+    @Bulkhead(name="users")
     User findUserById(@PathVariable Long id);
 
     @GetMapping("/users")
     @CircuitBreaker(name="users", fallbackMethod = "getAllUser")
+    @Bulkhead(name="users")
     List<User> allUsers();
 
     @GetMapping("/users-email/{email}")
     @CircuitBreaker(name="users", fallbackMethod = "getDefaultEmail")
+    @Bulkhead(name="users")
     User findByEmail( @PathVariable String email);
 
     @GetMapping("/_internal/users-login/{email}")
     @CircuitBreaker(name="users", fallbackMethod = "getDefaultEmailLogin")
+    @Bulkhead(name="users")
     User findByEmailLogin(@RequestHeader("Authorization") String authorization,@PathVariable String email);
 
+   //panne de users-service (hors 404) : UserLookupService sert la dernière version connue (stale-if-error)
    default User getDefaultUser(Long id, Exception e) {
+       if (!(e instanceof FeignException.NotFound)) {
+           throw new ServiceUnavailableException("users-service indisponible", e);
+       }
        User user = new User();
        user.setId(id);
        user.setName("default");
@@ -51,7 +62,11 @@ public interface UserRestClient {
         return user;
     }
 
+    //un 404 reste un utilisateur "non trouvée" ; toute autre erreur est une panne (stale-if-error dans UserLookupService)
     default User getDefaultEmailLogin(String authorization, String email, Exception e) {
+        if (!(e instanceof FeignException.NotFound)) {
+            throw new ServiceUnavailableException("users-service indisponible", e);
+        }
         User user = new User();
         user.setId(Long.valueOf("0"));
         user.setName("non trouvée");
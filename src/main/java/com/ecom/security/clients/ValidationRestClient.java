@@ -3,6 +3,7 @@ package com.ecom.security.clients;
 
 import com.ecom.security.dto.ValidationDto;
 import com.ecom.security.model.Validation;
+import io.github.resilience4j.bulkhead.annotation.Bulkhead;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -14,12 +15,24 @@ public interface ValidationRestClient {
 
     @PostMapping("/_internal/validation-send")
     @CircuitBreaker(name="validation", fallbackMethod = "getDefaultValidation")
+    @Bulkhead(name="validation")
     Validation sendValidation(@RequestHeader("Authorization") String authorization, @RequestBody ValidationDto validationDto);
 
+    //envoi depuis l'outbox : la référence sert de clé d'idempotence, validation-service ignore un second envoi de la même demande
+    @PostMapping("/_internal/validation-send")
+    @CircuitBreaker(name="validation", fallbackMethod = "getDefaultValidation")
+    @Bulkhead(name="validation")
+    Validation sendValidation(@RequestHeader("Authorization") String authorization, @RequestHeader("Idempotency-Key") String idempotencyKey,
+                              @RequestBody ValidationDto validationDto);
+
    default Validation getDefaultValidation(String authorization, ValidationDto validationDto, Exception e) {
        Validation validation = new Validation();
        validation.setId(null);
        return validation;
    }
 
+   default Validation getDefaultValidation(String authorization, String idempotencyKey, ValidationDto validationDto, Exception e) {
+       return getDefaultValidation(authorization, validationDto, e);
+   }
+
 }
@@ -0,0 +1,85 @@
+package com.ecom.security.config;
+
+import com.ecom.security.security.Digests;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtTimestampValidator;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+
+import java.time.Duration;
+import java.time.Instant;
+
+//Cache des JWT déjà vérifiés, indexé par l'empreinte du token et expiré au "exp" du token
+//un hit évite la vérification de signature mais repasse par les validateurs (expiration...)
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private final JwtDecoder delegate;
+    private final OAuth2TokenValidator<Jwt> hitValidator;
+    private final Cache<String, Jwt> cache;
+
+    public CachingJwtDecoder(JwtDecoder delegate, long maximumSize, MeterRegistry meterRegistry, String cacheName) {
+        this(delegate, new JwtTimestampValidator(), maximumSize, meterRegistry, cacheName);
+    }
+
+    public CachingJwtDecoder(JwtDecoder delegate, OAuth2TokenValidator<Jwt> hitValidator, long maximumSize,
+                             MeterRegistry meterRegistry, String cacheName) {
+        this.delegate = delegate;
+        this.hitValidator = hitValidator;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new ExpireAtTokenExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, cacheName);
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        String key = Digests.sha256Base64(token);
+        Jwt cached = cache.getIfPresent(key);
+        if (cached != null) {
+            OAuth2TokenValidatorResult result = hitValidator.validate(cached);
+            if (!result.hasErrors()) {
+                return cached;
+            }
+            cache.invalidate(key);
+            throw new JwtValidationException(result.getErrors().iterator().next().getDescription(), result.getErrors());
+        }
+        Jwt jwt = delegate.decode(token);
+        //un token sans expiration n'est jamais mis en cache
+        if (jwt.getExpiresAt() != null) {
+            cache.put(key, jwt);
+        }
+        return jwt;
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private static final class ExpireAtTokenExpiry implements Expiry<String, Jwt> {
+
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            return Math.max(0, Duration.between(Instant.now(), jwt.getExpiresAt()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, jwt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.ecom.security.config;
+
+import com.ecom.security.security.Digests;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2DeviceCode;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.OAuth2Token;
+import org.springframework.security.oauth2.core.OAuth2UserCode;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.endpoint.OidcParameterNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Autorisations OAuth2 en mémoire bornée : chaque entrée expire avec le dernier de ses tokens, les plus anciennes sont évincées au-delà de la taille max
+//index des tokens par empreinte (un access token JWT pèse ~1 Ko), nettoyé à l'éviction de l'autorisation
+//client_credentials : les tokens techniques sont des JWT vérifiés localement, leur autorisation peut ne pas être conservée
+public class CaffeineAuthorizationService implements OAuth2AuthorizationService {
+
+    private static final List<Class<? extends OAuth2Token>> TOKEN_TYPES = List.of(OAuth2AuthorizationCode.class,
+            OAuth2AccessToken.class, OAuth2RefreshToken.class, OidcIdToken.class, OAuth2UserCode.class, OAuth2DeviceCode.class);
+
+    private final Cache<String, OAuth2Authorization> authorizations;
+    private final Map<String, String> tokenIndex = new ConcurrentHashMap<>();
+    private final boolean persistClientCredentials;
+    private final Counter skipped;
+
+    public CaffeineAuthorizationService(long maximumSize, Duration defaultTtl, boolean persistClientCredentials, MeterRegistry meterRegistry) {
+        this.persistClientCredentials = persistClientCredentials;
+        this.authorizations = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new ExpireWithLastToken(defaultTtl))
+                //expiration au plus tôt, sans attendre une écriture pour purger
+                .scheduler(Scheduler.systemScheduler())
+                //éviction (taille, expiration) uniquement : un remplacement par save() réindexe lui-même
+                .evictionListener((String id, OAuth2Authorization authorization, RemovalCause cause) -> {
+                    if (authorization != null) {
+                        unindex(id, authorization);
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, authorizations, "oauth2Authorizations");
+        Gauge.builder("security.oauth2.authorization.index.size", tokenIndex, Map::size)
+                .description("Tokens indexés dans le store des autorisations OAuth2")
+                .register(meterRegistry);
+        this.skipped = Counter.builder("security.oauth2.authorization.skipped")
+                .description("Autorisations client_credentials non conservées")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        Assert.notNull(authorization, "authorization cannot be null");
+        if (!persistClientCredentials && AuthorizationGrantType.CLIENT_CREDENTIALS.equals(authorization.getAuthorizationGrantType())) {
+            skipped.increment();
+            return;
+        }
+        List<String> tokens = tokenValues(authorization);
+        for (String token : tokens) {
+            tokenIndex.put(Digests.sha256Base64(token), authorization.getId());
+        }
+        OAuth2Authorization previous = authorizations.asMap().put(authorization.getId(), authorization);
+        //tokens remplacés (code échangé, refresh token renouvelé) : retirés de l'index
+        if (previous != null) {
+            for (String token : tokenValues(previous)) {
+                if (!tokens.contains(token)) {
+                    tokenIndex.remove(Digests.sha256Base64(token), authorization.getId());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void remove(OAuth2Authorization authorization) {
+        Assert.notNull(authorization, "authorization cannot be null");
+        OAuth2Authorization removed = authorizations.asMap().remove(authorization.getId());
+        if (removed != null) {
+            unindex(authorization.getId(), removed);
+        }
+    }
+
+    @Override
+    public OAuth2Authorization findById(String id) {
+        Assert.hasText(id, "id cannot be empty");
+        return authorizations.getIfPresent(id);
+    }
+
+    @Override
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        Assert.hasText(token, "token cannot be empty");
+        String id = tokenIndex.get(Digests.sha256Base64(token));
+        if (id == null) {
+            return null;
+        }
+        OAuth2Authorization authorization = authorizations.getIfPresent(id);
+        return authorization != null && hasToken(authorization, token, tokenType) ? authorization : null;
+    }
+
+    public long size() {
+        return authorizations.estimatedSize();
+    }
+
+    //un autre save de la même autorisation a pu réindexer entre-temps : on ne retire que ce qui pointe encore vers elle
+    private void unindex(String id, OAuth2Authorization authorization) {
+        for (String token : tokenValues(authorization)) {
+            tokenIndex.remove(Digests.sha256Base64(token), id);
+        }
+    }
+
+    private static List<String> tokenValues(OAuth2Authorization authorization) {
+        List<String> values = new ArrayList<>();
+        String state = authorization.getAttribute(OAuth2ParameterNames.STATE);
+        if (state != null) {
+            values.add(state);
+        }
+        for (Class<? extends OAuth2Token> type : TOKEN_TYPES) {
+            OAuth2Authorization.Token<? extends OAuth2Token> token = authorization.getToken(type);
+            if (token != null) {
+                values.add(token.getToken().getTokenValue());
+            }
+        }
+        return values;
+    }
+
+    //même correspondance type / valeur que InMemoryOAuth2AuthorizationService
+    private static boolean hasToken(OAuth2Authorization authorization, String token, OAuth2TokenType tokenType) {
+        if (tokenType == null) {
+            return tokenValues(authorization).contains(token);
+        }
+        return switch (tokenType.getValue()) {
+            case OAuth2ParameterNames.STATE -> token.equals(authorization.getAttribute(OAuth2ParameterNames.STATE));
+            case OAuth2ParameterNames.CODE -> matches(authorization.getToken(OAuth2AuthorizationCode.class), token);
+            case OAuth2ParameterNames.ACCESS_TOKEN -> matches(authorization.getToken(OAuth2AccessToken.class), token);
+            case OAuth2ParameterNames.REFRESH_TOKEN -> matches(authorization.getToken(OAuth2RefreshToken.class), token);
+            case OidcParameterNames.ID_TOKEN -> matches(authorization.getToken(OidcIdToken.class), token);
+            case OAuth2ParameterNames.USER_CODE -> matches(authorization.getToken(OAuth2UserCode.class), token);
+            case OAuth2ParameterNames.DEVICE_CODE -> matches(authorization.getToken(OAuth2DeviceCode.class), token);
+            default -> false;
+        };
+    }
+
+    private static boolean matches(OAuth2Authorization.Token<? extends OAuth2Token> authorizationToken, String token) {
+        return authorizationToken != null && authorizationToken.getToken().getTokenValue().equals(token);
+    }
+
+    //durée de vie = expiration la plus lointaine de ses tokens ; sans token daté (autorisation en cours de consentement), durée par défaut
+    private static final class ExpireWithLastToken implements Expiry<String, OAuth2Authorization> {
+
+        private final Duration defaultTtl;
+
+        private ExpireWithLastToken(Duration defaultTtl) {
+            this.defaultTtl = defaultTtl;
+        }
+
+        @Override
+        public long expireAfterCreate(String id, OAuth2Authorization authorization, long currentTime) {
+            Instant last = null;
+            for (Class<? extends OAuth2Token> type : TOKEN_TYPES) {
+                OAuth2Authorization.Token<? extends OAuth2Token> token = authorization.getToken(type);
+                Instant expiresAt = token != null ? token.getToken().getExpiresAt() : null;
+                if (expiresAt != null && (last == null || expiresAt.isAfter(last))) {
+                    last = expiresAt;
+                }
+            }
+            if (last == null) {
+                return defaultTtl.toNanos();
+            }
+            return Math.max(0, Duration.between(Instant.now(), last).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String id, OAuth2Authorization authorization, long currentTime, long currentDuration) {
+            return expireAfterCreate(id, authorization, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String id, OAuth2Authorization authorization, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
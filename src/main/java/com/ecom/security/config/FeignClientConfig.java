@@ -0,0 +1,41 @@
+package com.ecom.security.config;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.openfeign.clientconfig.HttpClient5FeignConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+//Transport Apache HttpClient 5 des clients Feign : connexions keep-alive réutilisées depuis un pool
+//(tailles, timeouts et TTL dans spring.cloud.openfeign.httpclient.*)
+@Slf4j
+@Configuration
+public class FeignClientConfig {
+
+    //pas de nouvel essai caché dans HttpClient (503 rejoué après 1 s) : l'échec remonte tout de suite au circuit breaker
+    //gzip/deflate négocié et décompressé par le client ; désactivable si un service renvoie un encodage erroné
+    @Bean
+    public HttpClient5FeignConfiguration.HttpClientBuilderCustomizer feignHttpClientCustomizer(
+            @Value("${security.feign.response-compression:true}") boolean responseCompression) {
+        return builder -> {
+            builder.disableAutomaticRetries();
+            if (!responseCompression) {
+                builder.disableContentCompression();
+            }
+        };
+    }
+
+    //httpcomponents.httpclient.pool.total.{max,connections,pending} avec le tag httpclient=feign
+    @Bean
+    public MeterBinder feignPoolMetrics(HttpClientConnectionManager connectionManager) {
+        if (connectionManager instanceof PoolingHttpClientConnectionManager pool) {
+            return new PoolingHttpClientConnectionManagerMetricsBinder(pool, "feign");
+        }
+        log.warn("Gestionnaire de connexions Feign non poolé ({}), pas de métriques de pool", connectionManager.getClass().getSimpleName());
+        return registry -> { };
+    }
+}
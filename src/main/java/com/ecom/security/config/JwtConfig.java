@@ -1,109 +1,191 @@
 package com.ecom.security.config;
 
 
-import com.nimbusds.jose.JOSEException;
+import com.ecom.security.repository.TechSigningKeyRepository;
+import com.ecom.security.security.SigninMetrics;
+import com.ecom.security.security.BoundedPasswordEncoder;
+import com.ecom.security.security.TimedPasswordEncoder;
+import com.ecom.security.security.TokenEpochService;
+import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.jwk.JWK;
-import com.nimbusds.jose.jwk.JWKSet;
 import com.nimbusds.jose.jwk.RSAKey;
-import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
 import com.nimbusds.jose.jwk.source.JWKSource;
 import com.nimbusds.jose.proc.SecurityContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.Resource;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtTimestampValidator;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
-import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
 
-import java.security.KeyPairGenerator;
-import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
+@Slf4j
 @Configuration
 public class JwtConfig {
 
-    public JwtConfig(RsakeysConfig rsakeysConfig) {
+    //préfixe du kid des clés RSA utilisateur, suivi de l'empreinte de la clé
+    public static final String USER_KEY_ID = "user-key";
+    //tokens signés avant le kid par empreinte (kid "user-key" seul) : acceptés le temps de leur durée de vie
+    private static final Duration FIXED_KEY_ID_RETENTION = Duration.ofMinutes(35);
+
+    public JwtConfig(RsakeysConfig rsakeysConfig,
+                     @Value("${security.jwt.user.algorithm:RS256}") String userAlgorithm,
+                     @Value("${security.jwt.user.jwk:#{null}}") Resource userJwk,
+                     @Value("${security.jwt.user.accept-legacy-rsa:true}") boolean acceptLegacyRsa,
+                     @Value("${security.jwt.tech.algorithm:RS256}") String techAlgorithm) {
         this.rsakeysConfig = rsakeysConfig;
+        this.userAlgorithm = SigningKeys.algorithm(userAlgorithm);
+        this.techAlgorithm = SigningKeys.algorithm(techAlgorithm);
+        this.userVerificationAlgorithms = acceptLegacyRsa && !JWSAlgorithm.RS256.equals(this.userAlgorithm) ? Set.of(this.userAlgorithm, JWSAlgorithm.RS256) : Set.of(this.userAlgorithm);
+        this.userKeyRing = new UserKeyRing(buildUserSigningKey(userJwk), this.userAlgorithm, buildPinnedUserKeys(acceptLegacyRsa));
+        if (this.userVerificationAlgorithms.contains(JWSAlgorithm.RS256)) {
+            this.userKeyRing.retire(new RSAKey.Builder(rsakeysConfig.publicKey()).algorithm(JWSAlgorithm.RS256).keyID(USER_KEY_ID).build(), FIXED_KEY_ID_RETENTION);
+        }
+        this.userJwtEncoder = userKeyRing.encoder();
     }
 
     private RsakeysConfig rsakeysConfig;
-
+    private final JWSAlgorithm userAlgorithm;
+    private final JWSAlgorithm techAlgorithm;
+    private final UserKeyRing userKeyRing;
+    private final Set<JWSAlgorithm> userVerificationAlgorithms;
+    private final JwtEncoder userJwtEncoder;
+    //pool BCrypt créé par passwordEncoder(), arrêté avec le contexte
+    private BoundedPasswordEncoder boundedPasswordEncoder;
+
+    //BCrypt sur un pool borné (un thread par cœur par défaut), mesuré comme étape "password_check" de /signin
     @Bean
-    public PasswordEncoder passwordEncoder(){return new BCryptPasswordEncoder();}
+    public PasswordEncoder passwordEncoder(SigninMetrics signinMetrics, MeterRegistry meterRegistry,
+                                           @Value("${security.password.threads:0}") int threads,
+                                           @Value("${security.password.queue-capacity:64}") int queueCapacity,
+                                           @Value("${security.password.retry-after-seconds:1}") long retryAfterSeconds) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        boundedPasswordEncoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(), poolSize, queueCapacity, retryAfterSeconds, meterRegistry);
+        return new TimedPasswordEncoder(boundedPasswordEncoder, signinMetrics);
+    }
+
+    @PreDestroy
+    void shutdownPasswordPool() {
+        if (boundedPasswordEncoder != null) {
+            boundedPasswordEncoder.shutdown();
+        }
+    }
 
     // ─── USER TOKENS ──────────────────────────────────────────────────────────────
 
-    //Décoder les token utilisateurs avec clé public local
+    //Décoder les token utilisateurs avec clé public local (sélection par kid), derrière un cache des tokens vérifiés
+    //l'époque de révocation est contrôlée au décodage comme à chaque hit du cache
     @Bean
     @Qualifier("userJwtDecoder")
-    public JwtDecoder userJwtDecoder() {
-        return NimbusJwtDecoder
-                .withPublicKey(rsakeysConfig.publicKey())
-                .build();
+    public JwtDecoder userJwtDecoder(MeterRegistry meterRegistry,
+                                     @Value("${security.jwt.decoder-cache.maximum-size:10000}") long cacheSize,
+                                     TokenEpochService tokenEpochService) {
+        OAuth2TokenValidator<Jwt> validator = new DelegatingOAuth2TokenValidator<>(new JwtTimestampValidator(), tokenEpochService.validator());
+        NimbusJwtDecoder decoder = SigningKeys.decoder(userKeyRing.jwkSource(), userVerificationAlgorithms);
+        decoder.setJwtValidator(validator);
+        return new CachingJwtDecoder(decoder, validator, cacheSize, meterRegistry, "userJwtDecoder");
     }
 
     //Encoder les token utilisateurs avec double clé en local
-    //@Bean
-    @Qualifier("userJwtEncoder")
+    //pas de @Bean : un second JwtEncoder gênerait le serveur d'autorisation, l'instance est construite une fois ici
     public JwtEncoder userJwtEncoder() {
-        JWK jwk = new RSAKey.Builder(rsakeysConfig.publicKey())
-                .privateKey(rsakeysConfig.privateKey())
-                .keyID("user-key")
-                .build();
-        JWKSource<SecurityContext> source =
-                new ImmutableJWKSet<>(new JWKSet(jwk));
-        return new NimbusJwtEncoder(source);
+        return userJwtEncoder;
+    }
+
+    //clés utilisateur remplaçables à chaud (UserKeyReloader)
+    public UserKeyRing userKeyRing() {
+        return userKeyRing;
+    }
+
+    public JWSAlgorithm userAlgorithm() {
+        return userAlgorithm;
+    }
+
+    //clé RSA historique (fichiers PEM), même kid que celle relue par UserKeyReloader
+    private RSAKey legacyUserRsaKey() {
+        return SigningKeys.rsaKey(rsakeysConfig.publicKey(), rsakeysConfig.privateKey(), USER_KEY_ID);
+    }
+
+    private JWK buildUserSigningKey(Resource userJwk) {
+        if (JWSAlgorithm.RS256.equals(userAlgorithm)) {
+            return legacyUserRsaKey();
+        }
+        if (userJwk == null) {
+            throw new IllegalStateException("security.jwt.user.jwk est obligatoire pour l'algorithme " + userAlgorithm);
+        }
+        return SigningKeys.load(userJwk, userAlgorithm);
+    }
+
+    //la clé RSA reste acceptée en vérification pendant la transition vers ES256 / EdDSA
+    private List<JWK> buildPinnedUserKeys(boolean acceptLegacyRsa) {
+        List<JWK> keys = new ArrayList<>();
+        if (acceptLegacyRsa && !JWSAlgorithm.RS256.equals(userAlgorithm)) {
+            keys.add(legacyUserRsaKey().toPublicJWK());
+        }
+        return keys;
     }
 
 
     // ─── TECHNICAL TOKENS ─────────────────────────────────────────────────────────
 
-    //Génère clé RSA pour JWT inter-services
+    //Trousseau des clés (RSA, EC P-256 ou Ed25519) pour JWT inter-services, persisté et partagé entre instances
+    //sans security.jwt.tech.key-ring.secret : trousseau en mémoire, nouvelle clé à chaque démarrage
     @Bean
-    @Qualifier("techRsaKey")
-    public RSAKey techRsaKey() {
-        try {
-            var gen = KeyPairGenerator.getInstance("RSA");
-            gen.initialize(2048);
-            var kp = gen.generateKeyPair();
-            return new RSAKey.Builder((RSAPublicKey) kp.getPublic())
-                    .privateKey(kp.getPrivate())
-                    .keyID("tech-key")
-                    .build();
-        } catch (Exception e) {
-            throw new IllegalStateException("Impossible de générer la clé RSA", e);
+    public TechKeyRing techKeyRing(TechSigningKeyRepository repository, MeterRegistry meterRegistry,
+                                   @Value("${security.jwt.tech.key-ring.secret:}") String secret,
+                                   @Value("${security.jwt.tech.key-ring.rotation:P30D}") Duration rotation,
+                                   @Value("${security.jwt.tech.key-ring.publish-ahead:PT10M}") Duration publishAhead,
+                                   @Value("${security.jwt.tech.key-ring.retention:PT2H}") Duration retention,
+                                   @Value("${security.jwt.tech.key-ring.reload-on-unknown-kid:PT5S}") Duration reloadOnUnknownKid) {
+        if (secret == null || secret.isBlank()) {
+            log.warn("security.jwt.tech.key-ring.secret absent : clés techniques en mémoire, les tokens techniques ne survivent pas au redémarrage");
+            return TechKeyRing.inMemory(techAlgorithm, meterRegistry);
         }
+        return new TechKeyRing(techAlgorithm, repository, secret, rotation, publishAhead, retention, reloadOnUnknownKid, meterRegistry);
     }
 
 
-    //Expose clé public pour api inter-services
+    //Expose les clés publiques pour api inter-services (/oauth2/jwks), y compris celle qui signera après la prochaine rotation
     @Bean
     @Qualifier("techJwkSource")
-    public JWKSource<SecurityContext> techJwkSource(@Qualifier("techRsaKey") RSAKey techRsaKey) {
-        return new ImmutableJWKSet<>(new JWKSet((JWK) techRsaKey));
+    public JWKSource<SecurityContext> techJwkSource(TechKeyRing techKeyRing) {
+        return techKeyRing.jwkSource();
     }
 
 
-    //Encode token inter-services
+    //Encode token inter-services (y compris ceux émis par /oauth2/token) avec la clé active du trousseau
     @Bean
     @Primary
     @Qualifier("techJwtEncoder")
-    public JwtEncoder techJwtEncoder(@Qualifier("techJwkSource") JWKSource<SecurityContext> techJwkSource) {
-        return new NimbusJwtEncoder(techJwkSource);
+    public JwtEncoder techJwtEncoder(TechKeyRing techKeyRing) {
+        return techKeyRing.encoder();
     }
 
 
-    public JwtDecoder techJwtDecoder(@Qualifier("techRsaKey") RSAKey techRsaKey) {
-        try {
-            return NimbusJwtDecoder
-                    .withPublicKey(techRsaKey.toRSAPublicKey())
-                    .build();
-        } catch (JOSEException e) {
-            throw new RuntimeException(e);
-        }
+    //Décode token inter-services, derrière un cache des tokens vérifiés
+    //chaque clé du trousseau porte son algorithme : la sélection par kid impose l'algorithme de la clé
+    @Bean
+    @Qualifier("techJwtDecoder")
+    public JwtDecoder techJwtDecoder(TechKeyRing techKeyRing, MeterRegistry meterRegistry,
+                                     @Value("${security.jwt.decoder-cache.maximum-size:10000}") long cacheSize) {
+        JwtDecoder decoder = SigningKeys.decoder(techKeyRing.jwkSource(), SigningKeys.SUPPORTED);
+        return new CachingJwtDecoder(decoder, cacheSize, meterRegistry, "techJwtDecoder");
     }
 
 
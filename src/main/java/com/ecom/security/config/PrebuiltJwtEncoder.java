@@ -0,0 +1,67 @@
+package com.ecom.security.config;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.crypto.factories.DefaultJWSSignerFactory;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.JwtEncodingException;
+
+import java.net.URL;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+
+//Encoder JWT dont la clé, l'en-tête JWS et le signer sont construits une seule fois
+public class PrebuiltJwtEncoder implements JwtEncoder {
+
+    private final JWSSigner signer;
+    private final JWSHeader header;
+    private final Map<String, Object> headers;
+
+    public PrebuiltJwtEncoder(JWK jwk, JWSAlgorithm algorithm) {
+        try {
+            this.signer = new DefaultJWSSignerFactory().createJWSSigner(jwk, algorithm);
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Impossible de créer le signer " + algorithm, e);
+        }
+        this.header = new JWSHeader.Builder(algorithm)
+                .keyID(jwk.getKeyID())
+                .build();
+        this.headers = Map.copyOf(this.header.toJSONObject());
+    }
+
+    //l'algorithme et le kid sont ceux de la clé : l'en-tête demandé par l'appelant est ignoré
+    @Override
+    public Jwt encode(JwtEncoderParameters parameters) throws JwtEncodingException {
+        JwtClaimsSet claims = parameters.getClaims();
+        SignedJWT signedJwt = new SignedJWT(header, toNimbusClaims(claims));
+        try {
+            signedJwt.sign(signer);
+        } catch (JOSEException e) {
+            throw new JwtEncodingException("Impossible de signer le JWT", e);
+        }
+        return new Jwt(signedJwt.serialize(), claims.getIssuedAt(), claims.getExpiresAt(), headers, claims.getClaims());
+    }
+
+    private static JWTClaimsSet toNimbusClaims(JwtClaimsSet claims) {
+        JWTClaimsSet.Builder builder = new JWTClaimsSet.Builder();
+        claims.getClaims().forEach((name, value) -> {
+            if (value instanceof Instant instant) {
+                builder.claim(name, Date.from(instant));
+            } else if (value instanceof URL url) {
+                builder.claim(name, url.toExternalForm());
+            } else {
+                builder.claim(name, value);
+            }
+        });
+        return builder.build();
+    }
+}
@@ -0,0 +1,168 @@
+package com.ecom.security.config;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.crypto.Ed25519Verifier;
+import com.nimbusds.jose.crypto.factories.DefaultJWSVerifierFactory;
+import com.nimbusds.jose.jca.JCAContext;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.KeyConverter;
+import com.nimbusds.jose.jwk.KeyType;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.OctetKeyPairGenerator;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.JWSVerifierFactory;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.springframework.core.io.Resource;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+//Algorithmes de signature supportés et fabrication des clés / décodeurs associés
+public final class SigningKeys {
+
+    public static final Set<JWSAlgorithm> SUPPORTED = Set.of(JWSAlgorithm.RS256, JWSAlgorithm.ES256, JWSAlgorithm.EdDSA);
+
+    private SigningKeys() {
+    }
+
+    public static JWSAlgorithm algorithm(String name) {
+        JWSAlgorithm algorithm = JWSAlgorithm.parse(name.trim());
+        if (!SUPPORTED.contains(algorithm)) {
+            throw new IllegalStateException("Algorithme de signature non supporté : " + name + " (RS256, ES256 ou EdDSA)");
+        }
+        return algorithm;
+    }
+
+    //Génère une paire de clés pour l'algorithme demandé
+    public static JWK generate(JWSAlgorithm algorithm, String keyId) {
+        try {
+            if (JWSAlgorithm.ES256.equals(algorithm)) {
+                return new ECKeyGenerator(Curve.P_256).keyID(keyId).keyUse(KeyUse.SIGNATURE).algorithm(algorithm).generate();
+            }
+            if (JWSAlgorithm.EdDSA.equals(algorithm)) {
+                return new OctetKeyPairGenerator(Curve.Ed25519).keyID(keyId).keyUse(KeyUse.SIGNATURE).algorithm(algorithm).generate();
+            }
+            return new RSAKeyGenerator(2048).keyID(keyId).keyUse(KeyUse.SIGNATURE).algorithm(algorithm).generate();
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Impossible de générer la clé " + algorithm, e);
+        }
+    }
+
+    //Charge une clé privée au format JWK (JSON)
+    public static JWK load(Resource resource, JWSAlgorithm algorithm) {
+        try {
+            JWK jwk = JWK.parse(resource.getContentAsString(StandardCharsets.UTF_8));
+            if (!jwk.isPrivate() || !jwk.getKeyType().equals(KeyType.forAlgorithm(algorithm))) {
+                throw new IllegalStateException("La clé " + resource + " n'est pas une clé privée " + algorithm);
+            }
+            return jwk;
+        } catch (IOException | ParseException e) {
+            throw new IllegalStateException("Impossible de lire la clé " + resource, e);
+        }
+    }
+
+    //Paire RSA (fichiers PEM) dont le kid est dérivé de la clé : deux clés successives ne se confondent jamais
+    public static RSAKey rsaKey(RSAPublicKey publicKey, RSAPrivateKey privateKey, String keyIdPrefix) {
+        RSAKey key = new RSAKey.Builder(publicKey).privateKey(privateKey).algorithm(JWSAlgorithm.RS256).build();
+        try {
+            return new RSAKey.Builder(key).keyID(keyIdPrefix + "-" + key.computeThumbprint().toString().substring(0, 12)).build();
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Empreinte de la clé " + keyIdPrefix + " impossible", e);
+        }
+    }
+
+    //Décodeur qui choisit la clé de vérification par kid / type parmi celles du JWKSource
+    public static NimbusJwtDecoder decoder(JWKSource<SecurityContext> verificationKeys, Set<JWSAlgorithm> algorithms) {
+        DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+        processor.setJWSKeySelector((header, context) -> selectKeys(verificationKeys, algorithms, header, context));
+        processor.setJWSVerifierFactory(new OkpAwareVerifierFactory());
+        //les contrôles de date sont faits par les validateurs Spring
+        processor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+        return new NimbusJwtDecoder(processor);
+    }
+
+    //JWSVerificationKeySelector ignore les clés OKP (Ed25519) : elles sont emballées dans une Key dédiée
+    private static List<Key> selectKeys(JWKSource<SecurityContext> verificationKeys, Set<JWSAlgorithm> algorithms,
+                                        JWSHeader header, SecurityContext context) throws KeySourceException {
+        //algorithme non autorisé : aucune clé, le token est rejeté
+        if (!algorithms.contains(header.getAlgorithm())) {
+            return List.of();
+        }
+        List<Key> keys = new ArrayList<>();
+        for (JWK jwk : verificationKeys.get(new JWKSelector(JWKMatcher.forJWSHeader(header)), context)) {
+            if (jwk instanceof OctetKeyPair okp) {
+                keys.add(new OkpPublicKey(okp.toPublicJWK()));
+            } else {
+                keys.addAll(KeyConverter.toJavaKeys(List.of(jwk)));
+            }
+        }
+        return keys;
+    }
+
+    private record OkpPublicKey(OctetKeyPair jwk) implements PublicKey {
+
+        @Override
+        public String getAlgorithm() {
+            return "Ed25519";
+        }
+
+        @Override
+        public String getFormat() {
+            return null;
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            return null;
+        }
+    }
+
+    private static final class OkpAwareVerifierFactory implements JWSVerifierFactory {
+
+        private final DefaultJWSVerifierFactory delegate = new DefaultJWSVerifierFactory();
+
+        @Override
+        public JWSVerifier createJWSVerifier(JWSHeader header, Key key) throws JOSEException {
+            if (key instanceof OkpPublicKey okp) {
+                return new Ed25519Verifier(okp.jwk());
+            }
+            return delegate.createJWSVerifier(header, key);
+        }
+
+        @Override
+        public Set<JWSAlgorithm> supportedJWSAlgorithms() {
+            Set<JWSAlgorithm> supported = new HashSet<>(delegate.supportedJWSAlgorithms());
+            supported.add(JWSAlgorithm.EdDSA);
+            return supported;
+        }
+
+        @Override
+        public JCAContext getJCAContext() {
+            return delegate.getJCAContext();
+        }
+    }
+}
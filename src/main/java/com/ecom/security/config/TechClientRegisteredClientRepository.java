@@ -0,0 +1,93 @@
+package com.ecom.security.config;
+
+import com.ecom.security.entity.TechClient;
+import com.ecom.security.repository.TechClientRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+//Clients techniques de /oauth2/token : ceux de la configuration restent en mémoire,
+//ceux de la table tech_client sont relus à la demande (cache court) : un client ajouté ou désactivé est pris en compte sans redémarrage
+public class TechClientRegisteredClientRepository implements RegisteredClientRepository {
+
+    //id stable d'un client de la table : findById le retrouve sans index en mémoire
+    private static final String TABLE_ID_PREFIX = "tech_client:";
+
+    private final InMemoryRegisteredClientRepository configured;
+    private final TechClientRepository techClientRepository;
+    //clients inconnus ou désactivés mémorisés aussi (Optional vide) : un client_id inventé ne coûte pas une requête par appel
+    private final LoadingCache<String, Optional<RegisteredClient>> tableClients;
+
+    public TechClientRegisteredClientRepository(List<RegisteredClient> configured, TechClientRepository techClientRepository,
+                                                Duration cacheTtl, long cacheSize, MeterRegistry meterRegistry) {
+        this.configured = new InMemoryRegisteredClientRepository(configured);
+        this.techClientRepository = techClientRepository;
+        this.tableClients = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .build(clientId -> techClientRepository.findByClientIdAndEnabledTrue(clientId).map(TechClientRegisteredClientRepository::fromTable));
+        CaffeineCacheMetrics.monitor(meterRegistry, tableClients, "techClients");
+    }
+
+    public static RegisteredClient techClient(String id, String clientId, String encodedSecret, List<String> scopes) {
+        return RegisteredClient.withId(id)
+                .clientId(clientId)
+                .clientSecret(encodedSecret)
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .scopes(values -> values.addAll(scopes))
+                .build();
+    }
+
+    public static RegisteredClient techClient(String clientId, String encodedSecret, List<String> scopes) {
+        return techClient(UUID.randomUUID().toString(), clientId, encodedSecret, scopes);
+    }
+
+    //seul appelant : la mise à niveau du secret après authentification (OAuth2 Authorization Server)
+    //un client de la table n'est jamais copié en mémoire : le nouveau hash est écrit en base puis relu
+    @Override
+    public void save(RegisteredClient registeredClient) {
+        String id = registeredClient.getId();
+        if (id == null || !id.startsWith(TABLE_ID_PREFIX)) {
+            configured.save(registeredClient);
+            return;
+        }
+        String clientId = id.substring(TABLE_ID_PREFIX.length());
+        techClientRepository.updateSecretHash(clientId, registeredClient.getClientSecret());
+        tableClients.invalidate(clientId);
+    }
+
+    @Override
+    public RegisteredClient findById(String id) {
+        RegisteredClient client = configured.findById(id);
+        if (client == null && id != null && id.startsWith(TABLE_ID_PREFIX)) {
+            client = tableClients.get(id.substring(TABLE_ID_PREFIX.length())).orElse(null);
+        }
+        return client;
+    }
+
+    @Override
+    public RegisteredClient findByClientId(String clientId) {
+        RegisteredClient client = configured.findByClientId(clientId);
+        if (client == null && clientId != null) {
+            client = tableClients.get(clientId).orElse(null);
+        }
+        return client;
+    }
+
+    private static RegisteredClient fromTable(TechClient client) {
+        List<String> scopes = client.getScopes() == null || client.getScopes().isBlank() ? List.of() : Arrays.asList(client.getScopes().trim().split("\\s+"));
+        return techClient(TABLE_ID_PREFIX + client.getClientId(), client.getClientId(), client.getSecretHash(), scopes);
+    }
+}
@@ -0,0 +1,21 @@
+package com.ecom.security.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+//Clients techniques supplémentaires déclarés en configuration (security.oauth2.clients[n].id / secret / scopes)
+@ConfigurationProperties(prefix = "security.oauth2")
+public record TechClientsConfig(List<Client> clients) {
+
+    public TechClientsConfig {
+        clients = clients == null ? List.of() : List.copyOf(clients);
+    }
+
+    public record Client(String id, String secret, List<String> scopes) {
+
+        public Client {
+            scopes = scopes == null ? List.of() : List.copyOf(scopes);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.ecom.security.config;
+
+import com.ecom.security.entity.TechSigningKey;
+import com.ecom.security.repository.TechSigningKeyRepository;
+import com.ecom.security.security.Digests;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.text.ParseException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Trousseau des clés de signature des tokens techniques, persisté en base et partagé par toutes les instances
+//une clé est publiée (JWKS, vérification) "publish-ahead" avant de signer, et reste vérifiable "retention" après son retrait :
+//une instance redémarrée ou ajoutée reprend les mêmes clés, les tokens déjà émis restent valides
+//sans secret de chiffrement configuré, le trousseau reste en mémoire (une clé par démarrage, comme avant)
+@Slf4j
+public class TechKeyRing {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final JWSAlgorithm algorithm;
+    private final TechSigningKeyRepository repository;
+    //trousseau en mémoire quand repository est null
+    private final Map<String, TechSigningKey> memory = new ConcurrentHashMap<>();
+    private final SecretKeySpec cipherKey;
+    private final Duration rotation;
+    private final Duration publishAhead;
+    private final Duration retention;
+    private final Duration reloadOnUnknownKid;
+    private final Clock clock;
+    private volatile State state;
+
+    public TechKeyRing(JWSAlgorithm algorithm, TechSigningKeyRepository repository, String secret, Duration rotation,
+                       Duration publishAhead, Duration retention, Duration reloadOnUnknownKid, MeterRegistry meterRegistry) {
+        this(algorithm, repository, secret, rotation, publishAhead, retention, reloadOnUnknownKid, meterRegistry, Clock.systemUTC());
+    }
+
+    TechKeyRing(JWSAlgorithm algorithm, TechSigningKeyRepository repository, String secret, Duration rotation,
+                Duration publishAhead, Duration retention, Duration reloadOnUnknownKid, MeterRegistry meterRegistry, Clock clock) {
+        this.algorithm = algorithm;
+        this.repository = repository;
+        this.rotation = rotation;
+        this.publishAhead = publishAhead;
+        this.retention = retention;
+        this.reloadOnUnknownKid = reloadOnUnknownKid;
+        this.clock = clock;
+        byte[] keyBytes = new byte[32];
+        RANDOM.nextBytes(keyBytes);
+        this.cipherKey = new SecretKeySpec(repository != null ? Digests.sha256(secret) : keyBytes, "AES");
+        refresh();
+        Gauge.builder("security.jwt.tech.keys", this, ring -> ring.state.publicKeys().size())
+                .description("Clés techniques publiées (JWKS)")
+                .register(meterRegistry);
+    }
+
+    //trousseau propre à ce processus (tests, développement sans secret)
+    public static TechKeyRing inMemory(JWSAlgorithm algorithm, MeterRegistry meterRegistry) {
+        return new TechKeyRing(algorithm, null, null, Duration.ofDays(30), Duration.ZERO, Duration.ofHours(2), Duration.ofSeconds(5), meterRegistry);
+    }
+
+    public JWK signingKey() {
+        return state.active();
+    }
+
+    //encoder délégant à la clé active du moment : une rotation ne demande pas de recréer les beans
+    public JwtEncoder encoder() {
+        return parameters -> state.encoder().encode(parameters);
+    }
+
+    //clés publiques en cours de validité ; un kid inconnu (clé créée par une autre instance) provoque un rechargement borné
+    public JWKSource<SecurityContext> jwkSource() {
+        return (selector, context) -> {
+            State current = state;
+            List<JWK> keys = selector.select(current.publicKeys());
+            if (keys.isEmpty() && Duration.between(current.loadedAt(), clock.instant()).compareTo(reloadOnUnknownKid) >= 0) {
+                keys = selector.select(reload().publicKeys());
+            }
+            return keys;
+        };
+    }
+
+    //rotation si la clé active arrive en fin de période, puis relecture du trousseau partagé
+    @Scheduled(fixedDelayString = "${security.jwt.tech.key-ring.refresh-interval:PT1M}",
+            initialDelayString = "${security.jwt.tech.key-ring.refresh-interval:PT1M}")
+    public synchronized void refresh() {
+        Instant now = clock.instant();
+        List<TechSigningKey> keys = load(now);
+        TechSigningKey newest = keys.stream().max(Comparator.comparing(TechSigningKey::getActivatesAt)).orElse(null);
+        if (newest == null) {
+            //trousseau vide (premier démarrage) : la clé sert immédiatement
+            store(newKey(now, now));
+        } else if (!now.isBefore(newest.getRetiresAt().minus(publishAhead))) {
+            //la suivante est publiée avant de signer, le temps que les vérificateurs rechargent le JWKS
+            Instant activatesAt = now.plus(publishAhead);
+            store(newKey(now, activatesAt));
+            log.info("Rotation de la clé technique : nouvelle clé active à partir de {}", activatesAt);
+        }
+        reload();
+        if (repository != null) {
+            repository.deleteExpiredBefore(now);
+        } else {
+            memory.values().removeIf(key -> key.getExpiresAt().isBefore(now));
+        }
+    }
+
+    private synchronized State reload() {
+        Instant now = clock.instant();
+        List<TechSigningKey> keys = load(now);
+        if (keys.isEmpty() && state != null) {
+            return state;
+        }
+        //clé active = la plus récente déjà activée ; à égalité (deux instances au premier démarrage), le kid départage
+        TechSigningKey active = keys.stream()
+                .filter(key -> !key.getActivatesAt().isAfter(now))
+                .max(Comparator.comparing(TechSigningKey::getActivatesAt).thenComparing(TechSigningKey::getKid))
+                .orElseGet(() -> keys.stream().min(Comparator.comparing(TechSigningKey::getActivatesAt)).orElseThrow());
+        State current = state;
+        JWK activeJwk = current != null && current.active().getKeyID().equals(active.getKid()) ? current.active() : decrypt(active);
+        List<JWK> publicKeys = new ArrayList<>();
+        for (TechSigningKey key : keys) {
+            publicKeys.add(key.getKid().equals(active.getKid()) ? activeJwk.toPublicJWK() : decrypt(key).toPublicJWK());
+        }
+        JwtEncoder encoder = current != null && current.active() == activeJwk ? current.encoder()
+                : new PrebuiltJwtEncoder(activeJwk, JWSAlgorithm.parse(active.getAlgorithm()));
+        state = new State(activeJwk, encoder, new JWKSet(publicKeys), now);
+        return state;
+    }
+
+    private List<TechSigningKey> load(Instant now) {
+        if (repository != null) {
+            return repository.findByExpiresAtAfter(now);
+        }
+        return memory.values().stream().filter(key -> key.getExpiresAt().isAfter(now)).toList();
+    }
+
+    private void store(TechSigningKey key) {
+        if (repository != null) {
+            repository.save(key);
+        } else {
+            memory.put(key.getKid(), key);
+        }
+    }
+
+    private TechSigningKey newKey(Instant now, Instant activatesAt) {
+        String kid = "tech-" + UUID.randomUUID();
+        JWK jwk = SigningKeys.generate(algorithm, kid);
+        Instant retiresAt = activatesAt.plus(rotation);
+        return new TechSigningKey(kid, algorithm.getName(), encrypt(kid, jwk.toJSONString()), now, activatesAt, retiresAt, retiresAt.plus(retention));
+    }
+
+    // ─── CHIFFREMENT ──────────────────────────────────────────────────────────────
+
+    //AES-GCM, IV aléatoire de 12 octets en tête ; le kid est lié en données associées (une ligne ne peut pas être recopiée sous un autre kid)
+    private String encrypt(String kid, String json) {
+        try {
+            byte[] iv = new byte[12];
+            RANDOM.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, cipherKey, new GCMParameterSpec(128, iv));
+            cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+            byte[] encrypted = cipher.doFinal(json.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(ByteBuffer.allocate(iv.length + encrypted.length).put(iv).put(encrypted).array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Chiffrement de la clé technique impossible", e);
+        }
+    }
+
+    private JWK decrypt(TechSigningKey key) {
+        try {
+            byte[] data = Base64.getDecoder().decode(key.getEncryptedJwk());
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, cipherKey, new GCMParameterSpec(128, data, 0, 12));
+            cipher.updateAAD(key.getKid().getBytes(StandardCharsets.UTF_8));
+            return JWK.parse(new String(cipher.doFinal(data, 12, data.length - 12), StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException | ParseException e) {
+            throw new IllegalStateException("Clé technique " + key.getKid() + " illisible (secret du trousseau différent ?)", e);
+        }
+    }
+
+    private record State(JWK active, JwtEncoder encoder, JWKSet publicKeys, Instant loadedAt) {
+    }
+}
@@ -0,0 +1,41 @@
+package com.ecom.security.config;
+
+import com.ecom.security.repository.InMemoryTokenStore;
+import com.ecom.security.repository.JpaTokenStore;
+import com.ecom.security.repository.JwtRepository;
+import com.ecom.security.repository.RedisSharedCache;
+import com.ecom.security.repository.SharedCacheTokenStore;
+import com.ecom.security.repository.TokenStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+//Choix du stockage des tokens utilisateur par déploiement (security.token-store.type)
+@Configuration
+public class TokenStoreConfig {
+
+    //table jwt_token, comportement historique
+    @Bean
+    @ConditionalOnProperty(name = "security.token-store.type", havingValue = "jpa", matchIfMissing = true)
+    public TokenStore jpaTokenStore(JwtRepository jwtRepository) {
+        return new JpaTokenStore(jwtRepository);
+    }
+
+    //une seule instance : rien ne sort de la JVM
+    @Bean
+    @ConditionalOnProperty(name = "security.token-store.type", havingValue = "memory")
+    public TokenStore inMemoryTokenStore(MeterRegistry meterRegistry,
+                                         @Value("${security.token-store.memory.maximum-size:100000}") long maximumSize) {
+        return new InMemoryTokenStore(maximumSize, meterRegistry);
+    }
+
+    //plusieurs instances sans écriture SQL par connexion : Redis (spring.data.redis.*)
+    @Bean
+    @ConditionalOnProperty(name = "security.token-store.type", havingValue = "shared")
+    public TokenStore sharedCacheTokenStore(StringRedisTemplate redisTemplate) {
+        return new SharedCacheTokenStore(new RedisSharedCache(redisTemplate));
+    }
+}
@@ -0,0 +1,164 @@
+package com.ecom.security.config;
+
+import com.ecom.security.security.Digests;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWK;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.converter.RsaKeyConverters;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+//Relit la clé de signature utilisateur (PEM rsa.* en RS256, JWK security.jwt.user.jwk sinon) sans redémarrage
+//déclenché par un changement des fichiers (scrutés périodiquement, y compris un secret Kubernetes remplacé par lien) ou par /_internal/user-keys/reload
+@Slf4j
+@Component
+public class UserKeyReloader {
+
+    private final UserKeyRing userKeyRing;
+    private final JWSAlgorithm algorithm;
+    private final ResourceLoader resourceLoader;
+    private final String publicKeyLocation;
+    private final String privateKeyLocation;
+    private final String jwkLocation;
+    private final Duration previousKeyRetention;
+    private final Duration publishAhead;
+    private final boolean watch;
+    private final MeterRegistry meterRegistry;
+    private String fingerprint;
+
+    public UserKeyReloader(JwtConfig jwtConfig, ResourceLoader resourceLoader, MeterRegistry meterRegistry,
+                           @Value("${rsa.public-key:#{null}}") String publicKeyLocation,
+                           @Value("${rsa.private-key:#{null}}") String privateKeyLocation,
+                           @Value("${security.jwt.user.jwk:#{null}}") String jwkLocation,
+                           @Value("${security.jwt.user.previous-key-retention:PT35M}") Duration previousKeyRetention,
+                           @Value("${security.jwt.user.publish-ahead:PT2M}") Duration publishAhead,
+                           @Value("${security.jwt.user.watch:true}") boolean watch) {
+        this.userKeyRing = jwtConfig.userKeyRing();
+        this.algorithm = jwtConfig.userAlgorithm();
+        this.resourceLoader = resourceLoader;
+        this.meterRegistry = meterRegistry;
+        this.publicKeyLocation = publicKeyLocation;
+        this.privateKeyLocation = privateKeyLocation;
+        this.jwkLocation = jwkLocation;
+        this.previousKeyRetention = previousKeyRetention;
+        this.publishAhead = publishAhead;
+        this.watch = watch;
+        this.fingerprint = watch ? fingerprintOrNull() : null;
+    }
+
+    @Scheduled(fixedDelayString = "${security.jwt.user.watch-interval:PT30S}", initialDelayString = "${security.jwt.user.watch-interval:PT30S}")
+    public void watch() {
+        if (!watch) {
+            return;
+        }
+        String current = fingerprintOrNull();
+        //fichier en cours d'écriture ou absent : on réessaie au prochain passage
+        if (current == null || current.equals(fingerprint)) {
+            return;
+        }
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            log.error("Nouvelle clé utilisateur illisible, la clé actuelle reste en service", e);
+        }
+    }
+
+    //true si une nouvelle clé a été chargée : acceptée aussitôt en vérification, elle ne signe qu'après publish-ahead
+    //(les autres instances l'ont chargée entre-temps) ; l'ancienne reste acceptée pendant previous-key-retention
+    public synchronized boolean reload() {
+        try {
+            String current = fingerprint();
+            boolean rotated = userKeyRing.rotate(load(), publishAhead, previousKeyRetention);
+            fingerprint = current;
+            count(rotated ? "rotated" : "unchanged");
+            if (rotated) {
+                log.info("Nouvelle clé utilisateur publiée (kid {}), elle signera dans {}", nextKeyId(), publishAhead);
+            }
+            return rotated;
+        } catch (RuntimeException e) {
+            count("failed");
+            throw e;
+        }
+    }
+
+    public String currentKeyId() {
+        return userKeyRing.signingKey().getKeyID();
+    }
+
+    //clé publiée en attente d'activation (null si aucune)
+    public String nextKeyId() {
+        JWK pending = userKeyRing.pendingKey();
+        return pending == null ? null : pending.getKeyID();
+    }
+
+    private JWK load() {
+        if (!JWSAlgorithm.RS256.equals(algorithm)) {
+            return SigningKeys.load(resource(jwkLocation), algorithm);
+        }
+        RSAPublicKey publicKey;
+        RSAPrivateKey privateKey;
+        try (InputStream publicPem = resource(publicKeyLocation).getInputStream();
+             InputStream privatePem = resource(privateKeyLocation).getInputStream()) {
+            publicKey = RsaKeyConverters.x509().convert(publicPem);
+            privateKey = RsaKeyConverters.pkcs8().convert(privatePem);
+        } catch (IOException e) {
+            throw new IllegalStateException("Impossible de lire les fichiers PEM de la clé utilisateur", e);
+        }
+        if (!publicKey.getModulus().equals(privateKey.getModulus())) {
+            throw new IllegalStateException("Les clés publique et privée utilisateur ne forment pas une paire");
+        }
+        return SigningKeys.rsaKey(publicKey, privateKey, JwtConfig.USER_KEY_ID);
+    }
+
+    private String fingerprintOrNull() {
+        try {
+            return fingerprint();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    //empreinte du contenu des fichiers de clé (la date de modification n'est pas fiable pour un lien remplacé)
+    private String fingerprint() {
+        List<String> locations = new ArrayList<>();
+        if (JWSAlgorithm.RS256.equals(algorithm)) {
+            locations.add(publicKeyLocation);
+            locations.add(privateKeyLocation);
+        } else {
+            locations.add(jwkLocation);
+        }
+        StringBuilder content = new StringBuilder();
+        for (String location : locations) {
+            try {
+                content.append(resource(location).getContentAsString(StandardCharsets.UTF_8)).append('\n');
+            } catch (IOException e) {
+                throw new IllegalStateException("Impossible de lire " + location, e);
+            }
+        }
+        return Digests.sha256Base64(content.toString());
+    }
+
+    private Resource resource(String location) {
+        if (location == null || location.isBlank()) {
+            throw new IllegalStateException("Emplacement de la clé utilisateur non configuré pour " + algorithm);
+        }
+        return resourceLoader.getResource(location);
+    }
+
+    private void count(String result) {
+        meterRegistry.counter("security.jwt.user.key-reloads", "result", result).increment();
+    }
+}
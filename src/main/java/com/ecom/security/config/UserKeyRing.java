@@ -0,0 +1,154 @@
+package com.ecom.security.config;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+//Clés des tokens utilisateur remplaçables à chaud : clé de signature, encoder et clés de vérification changent d'un bloc
+//une nouvelle clé est d'abord publiée (acceptée en vérification) "publish-ahead" avant de signer, le temps que les autres instances la chargent ;
+//l'ancienne clé de signature reste acceptée en vérification jusqu'à l'expiration des tokens qu'elle a signés
+public class UserKeyRing {
+
+    private final JWSAlgorithm algorithm;
+    //clés toujours acceptées (RSA historique pendant la transition d'algorithme)
+    private final List<JWK> pinned;
+    private final Clock clock;
+    private volatile State state;
+
+    public UserKeyRing(JWK signingKey, JWSAlgorithm algorithm, List<JWK> pinned) {
+        this(signingKey, algorithm, pinned, Clock.systemUTC());
+    }
+
+    UserKeyRing(JWK signingKey, JWSAlgorithm algorithm, List<JWK> pinned, Clock clock) {
+        this.algorithm = algorithm;
+        this.pinned = List.copyOf(pinned);
+        this.clock = clock;
+        this.state = state(signingKey, List.of(), null);
+    }
+
+    public JWK signingKey() {
+        return current().signingKey();
+    }
+
+    //clé publiée qui signera à partir de activatesAt (null si aucune)
+    public JWK pendingKey() {
+        Pending pending = current().pending();
+        return pending == null ? null : pending.jwk();
+    }
+
+    //encoder délégant à la clé du moment : JwtService n'a pas à être recréé après une rotation
+    public JwtEncoder encoder() {
+        return parameters -> current().encoder().encode(parameters);
+    }
+
+    public JWKSource<SecurityContext> jwkSource() {
+        return (selector, context) -> selector.select(current().verificationKeys());
+    }
+
+    //remplace immédiatement la clé de signature ; false si c'est déjà la clé en service
+    public boolean rotate(JWK next, Duration retention) {
+        return rotate(next, Duration.ZERO, retention);
+    }
+
+    //publie la clé suivante, qui signera après publishAhead ; false si elle est déjà en service ou déjà publiée
+    //une clé publiée puis remplacée avant d'avoir signé est simplement abandonnée
+    public synchronized boolean rotate(JWK next, Duration publishAhead, Duration retention) {
+        State current = current();
+        String thumbprint = thumbprint(next);
+        if (thumbprint.equals(thumbprint(current.signingKey()))
+                || current.pending() != null && thumbprint.equals(thumbprint(current.pending().jwk()))) {
+            return false;
+        }
+        for (JWK known : current.verificationKeys().getKeys()) {
+            boolean pendingKey = current.pending() != null && known.getKeyID() != null && known.getKeyID().equals(current.pending().jwk().getKeyID());
+            if (!pendingKey && known.getKeyID() != null && known.getKeyID().equals(next.getKeyID())) {
+                throw new IllegalStateException("kid " + next.getKeyID() + " déjà utilisé par une autre clé");
+            }
+        }
+        Pending pending = new Pending(next, clock.instant().plus(publishAhead), retention);
+        state = publishAhead.isZero() || publishAhead.isNegative()
+                ? activate(current, pending)
+                : state(current.signingKey(), current.retired(), pending);
+        return true;
+    }
+
+    //clé qui ne signe plus mais reste acceptée en vérification pendant retention
+    public synchronized void retire(JWK key, Duration retention) {
+        State current = current();
+        List<Retired> retired = new ArrayList<>(current.retired());
+        retired.add(new Retired(key.toPublicJWK(), clock.instant().plus(retention)));
+        state = state(current.signingKey(), retired, current.pending());
+    }
+
+    //clé publiée arrivée à son heure d'activation, clés retirées expirées : appliqué au premier accès suivant
+    private State current() {
+        State current = state;
+        if (stale(current)) {
+            synchronized (this) {
+                current = state;
+                if (stale(current)) {
+                    Instant now = clock.instant();
+                    if (current.pending() != null && !now.isBefore(current.pending().activatesAt())) {
+                        current = activate(current, current.pending());
+                    }
+                    current = state(current.signingKey(), current.retired().stream().filter(key -> key.expiresAt().isAfter(now)).toList(), current.pending());
+                    state = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private boolean stale(State current) {
+        Instant now = clock.instant();
+        return current.nextExpiry() != null && !now.isBefore(current.nextExpiry())
+                || current.pending() != null && !now.isBefore(current.pending().activatesAt());
+    }
+
+    //la clé publiée signe désormais, l'ancienne reste vérifiable "retention"
+    private State activate(State current, Pending pending) {
+        List<Retired> retired = new ArrayList<>(current.retired());
+        retired.add(new Retired(current.signingKey().toPublicJWK(), clock.instant().plus(pending.retention())));
+        return state(pending.jwk(), retired, null);
+    }
+
+    private State state(JWK signingKey, List<Retired> retired, Pending pending) {
+        List<JWK> keys = new ArrayList<>();
+        keys.add(signingKey.toPublicJWK());
+        if (pending != null) {
+            keys.add(pending.jwk().toPublicJWK());
+        }
+        retired.forEach(key -> keys.add(key.jwk()));
+        keys.addAll(pinned);
+        Instant nextExpiry = retired.stream().map(Retired::expiresAt).min(Instant::compareTo).orElse(null);
+        JwtEncoder encoder = state != null && state.signingKey() == signingKey ? state.encoder() : new PrebuiltJwtEncoder(signingKey, algorithm);
+        return new State(signingKey, encoder, new JWKSet(keys), List.copyOf(retired), pending, nextExpiry);
+    }
+
+    private static String thumbprint(JWK jwk) {
+        try {
+            return jwk.computeThumbprint().toString();
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Empreinte de la clé " + jwk.getKeyID() + " impossible", e);
+        }
+    }
+
+    private record Retired(JWK jwk, Instant expiresAt) {
+    }
+
+    private record Pending(JWK jwk, Instant activatesAt, Duration retention) {
+    }
+
+    private record State(JWK signingKey, JwtEncoder encoder, JWKSet verificationKeys, List<Retired> retired, Pending pending, Instant nextExpiry) {
+    }
+}
@@ -4,11 +4,16 @@ package com.ecom.security.controller;
 
 import com.ecom.security.clients.UserRestClient;
 import com.ecom.security.dto.AuthentificationDTO;
-import com.ecom.security.entity.JwtUser;
 import com.ecom.security.model.User;
-import com.ecom.security.repository.JwtRepository;
+import com.ecom.security.repository.TokenStore;
+import com.ecom.security.response.ServiceUnavailableException;
+import com.ecom.security.response.TooManyRequestsException;
 import com.ecom.security.response.UserNotFoundException;
 import com.ecom.security.security.JwtService;
+import com.ecom.security.security.SigninMetrics;
+import com.ecom.security.security.SigninRateLimiter;
+import com.ecom.security.service.UserLookupService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -20,6 +25,7 @@ import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -32,29 +38,56 @@ public class LoginController {
     private final UserRestClient userRestClient;
     private final AuthenticationManager authenticationManager;
     private final JwtService jwtService;
-    private final JwtRepository jwtRepository;
+    private final TokenStore tokenStore;
+    private final SigninMetrics signinMetrics;
+    private final UserLookupService userLookupService;
+    private final SigninRateLimiter signinRateLimiter;
 
-    public LoginController(UserRestClient userRestClient, AuthenticationManager authenticationManager, JwtService jwtService, JwtRepository jwtRepository) {
+    public LoginController(UserRestClient userRestClient, AuthenticationManager authenticationManager, JwtService jwtService, TokenStore tokenStore, SigninMetrics signinMetrics, UserLookupService userLookupService, SigninRateLimiter signinRateLimiter) {
         this.userRestClient = userRestClient;
         this.authenticationManager = authenticationManager;
         this.jwtService = jwtService;
-        this.jwtRepository = jwtRepository;
+        this.tokenStore = tokenStore;
+        this.signinMetrics = signinMetrics;
+        this.userLookupService = userLookupService;
+        this.signinRateLimiter = signinRateLimiter;
     }
 
     @PostMapping(path = "/signin")
-    public ResponseEntity<Map<String, String>> signin(@RequestBody AuthentificationDTO authentificationDTO){
+    public ResponseEntity<Map<String, String>> signin(@RequestBody AuthentificationDTO authentificationDTO, HttpServletRequest request){
 
+        //chaque étape est mesurée puis publiée avec le résultat du login
+        signinMetrics.start();
+        String outcome = SigninMetrics.ERROR;
         Authentication authenticate = null;
         try {
+            //trafic abusif refusé avant users-service et BCrypt
+            signinRateLimiter.check(authentificationDTO.username(), request.getRemoteAddr());
             authenticate = authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(authentificationDTO.username(), authentificationDTO.password())
             );
             if(authenticate.isAuthenticated()){
                 UserDetails userDetails = (UserDetails) authenticate.getPrincipal();
-                return this.jwtService.generate(userDetails, authentificationDTO.devices());
+                ResponseEntity<Map<String, String>> response = this.jwtService.generate(userDetails, authentificationDTO.devices());
+                outcome = response.getStatusCode() == HttpStatus.OK ? SigninMetrics.OK : SigninMetrics.NEW_DEVICE;
+                return response;
             }
         } catch (AuthenticationException e) {
+            //users-service en panne sans version de secours : 503 plutôt qu'un faux "mot de passe invalide"
+            if (e.getCause() instanceof ServiceUnavailableException unavailable) {
+                throw unavailable;
+            }
+            outcome = SigninMetrics.BAD_CREDENTIALS;
+            signinRateLimiter.recordFailure(authentificationDTO.username(), request.getRemoteAddr());
             throw new UserNotFoundException("Email ou mot de passe invalide");
+        } catch (TooManyRequestsException e) {
+            outcome = SigninMetrics.REJECTED;
+            throw e;
+        } catch (UserNotFoundException e) {
+            outcome = "Compte non activé".equals(e.getMessage()) ? SigninMetrics.INACTIVE_ACCOUNT : SigninMetrics.ERROR;
+            throw e;
+        } finally {
+            signinMetrics.finish(outcome);
         }
         throw new UserNotFoundException("Authentification a échouée");
     }
@@ -62,18 +95,23 @@ public class LoginController {
     @PostMapping(path="/signin-validation")
     public ResponseEntity<Map<String, String>> signinValidation(@RequestBody Map<String, String> uuidString){
         UUID uuid = UUID.fromString(uuidString.get("uuid").trim());
-        Optional<JwtUser> jwt = this.jwtRepository.findByUuid(uuid);
-        if (jwt.isPresent() && jwt.get().getPending()) {
-            String token = jwt.get().getToken();
-            jwt.get().setPending(false);
-            jwtRepository.save(jwt.get());
-            return new ResponseEntity<>(Map.of("bearer",token), HttpStatus.OK);
+        //le token n'est remis qu'une fois : le store ne garde ensuite que son empreinte
+        Optional<String> token = this.tokenStore.takePendingToken(uuid, Instant.now());
+        if (token.isPresent()) {
+            return new ResponseEntity<>(Map.of("bearer",token.get()), HttpStatus.OK);
         } else {
             throw new UserNotFoundException("Service indisponible");
         }
     }
 
 
+    //échange d'un refresh token (à usage unique) contre un nouveau token d'accès et le refresh token suivant
+    @PostMapping(path="/signin-refresh")
+    public ResponseEntity<Map<String, String>> signinRefresh(@RequestBody Map<String, String> refreshRequest){
+        return new ResponseEntity<>(this.jwtService.refresh(refreshRequest.get(JwtService.REFRESH_TOKEN), refreshRequest.get("devices")), HttpStatus.OK);
+    }
+
+
     @GetMapping(path = "/users")
     @PreAuthorize("hasAuthority('SCOPE_AMDIN')")
     public List<User> getUsers() {
@@ -82,7 +120,7 @@ public class LoginController {
 
     @GetMapping("/users/{id}")
     public User customerById(@PathVariable Long id){
-        return userRestClient.findUserById(id);
+        return userLookupService.findUserById(id);
     }
 
     @GetMapping("/users-email/{email}")
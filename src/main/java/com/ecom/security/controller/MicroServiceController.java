@@ -1,22 +1,41 @@
 package com.ecom.security.controller;
 
+import com.ecom.security.config.UserKeyReloader;
 import com.ecom.security.dto.LoginActivationDto;
+import com.ecom.security.security.RefreshTokenService;
+import com.ecom.security.security.TokenEpochService;
 import com.ecom.security.service.ActivationDeviceIdService;
+import com.ecom.security.service.UserLookupService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Slf4j
 @RestController
 public class MicroServiceController {
 
     private final ActivationDeviceIdService activationDeviceIdService;
+    private final UserLookupService userLookupService;
+    private final UserKeyReloader userKeyReloader;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenEpochService tokenEpochService;
 
-    public MicroServiceController(ActivationDeviceIdService activationDeviceIdService) {
+    public MicroServiceController(ActivationDeviceIdService activationDeviceIdService, UserLookupService userLookupService,
+                                  UserKeyReloader userKeyReloader, RefreshTokenService refreshTokenService,
+                                  TokenEpochService tokenEpochService) {
         this.activationDeviceIdService = activationDeviceIdService;
+        this.userLookupService = userLookupService;
+        this.userKeyReloader = userKeyReloader;
+        this.refreshTokenService = refreshTokenService;
+        this.tokenEpochService = tokenEpochService;
     }
 
     @PostMapping("/_internal/login-activation-deviceId")
@@ -24,4 +43,38 @@ public class MicroServiceController {
         this.activationDeviceIdService.activationDeviceIdService(loginActivationDto);
     }
 
+    //users-service invalide l'utilisateur mis en cache (mot de passe, rôles ou activation modifiés)
+    //ses refresh tokens sont révoqués : ils portent les claims d'avant la modification
+    @DeleteMapping("/_internal/users-cache/{email}")
+    public void evictUser(@PathVariable String email){
+        this.userLookupService.evict(email);
+        this.refreshTokenService.revokeUser(email);
+    }
+
+    //révocation complète (compte compromis, suppression) : tokens d'accès et refresh tokens refusés dès l'époque suivante
+    @PostMapping("/_internal/users/{id}/revoke")
+    public Map<String, Object> revokeUser(@PathVariable Long id){
+        return Map.of("epoch", this.tokenEpochService.bump(id));
+    }
+
+    @DeleteMapping("/_internal/users-cache")
+    public void evictAllUsers(){
+        this.userLookupService.evictAll();
+    }
+
+    //relit la clé de signature utilisateur sur cette instance (les autres la détectent au prochain passage de la surveillance)
+    //"kid" signe encore, "nextKid" est publiée et signera après publish-ahead
+    @PostMapping("/_internal/user-keys/reload")
+    public Map<String, Object> reloadUserKeys(){
+        boolean rotated = this.userKeyReloader.reload();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("rotated", rotated);
+        result.put("kid", this.userKeyReloader.currentKeyId());
+        String nextKid = this.userKeyReloader.nextKeyId();
+        if (nextKid != null) {
+            result.put("nextKid", nextKid);
+        }
+        return result;
+    }
+
 }
@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.UUID;
+
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
@@ -15,4 +17,10 @@ public class ValidationDto {
     private Long deviceId;
     private String email;
     private String type;
+    //référence de l'outbox, permet à validation-service d'ignorer un renvoi
+    private UUID reference;
+
+    public ValidationDto(Long userId, String username, Long deviceId, String email, String type) {
+        this(userId, username, deviceId, email, type, null);
+    }
 }
@@ -7,7 +7,8 @@ import lombok.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "user_device")
+@Table(name = "user_device",
+        uniqueConstraints = @UniqueConstraint(name = "uk_user_device_hash_user", columnNames = {"device_hash", "user_id"}))
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
@@ -18,6 +19,10 @@ public class DevicesId {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
+    //empreinte SHA-256 (hex) du fingerprint navigateur : seule colonne utilisée pour la recherche
+    @Column(columnDefinition = "char(64)")
+    private String deviceHash;
+    //fingerprint brut des anciennes lignes, gardé uniquement pour le rattrapage des empreintes
     @Lob
     private String deviceId;
     private Instant createdAt;
@@ -0,0 +1,24 @@
+package com.ecom.security.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+//Verrou à bail pour une tâche qui ne doit tourner que sur une instance à la fois (rattrapages au démarrage)
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "job_lock")
+public class JobLock {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+    //le verrou est libre une fois cette date passée (instance arrêtée sans le rendre)
+    private Instant lockedUntil;
+    @Column(length = 64)
+    private String lockedBy;
+}
@@ -4,6 +4,7 @@ import com.ecom.security.model.User;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.time.Instant;
 import java.util.UUID;
 
 @Entity
@@ -12,16 +13,26 @@ import java.util.UUID;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "jwt")
+@Table(name = "jwt_token", indexes = {
+        @Index(name = "idx_jwt_token_user_id", columnList = "user_id"),
+        @Index(name = "uk_jwt_token_uuid", columnList = "uuid", unique = true),
+        @Index(name = "uk_jwt_token_hash", columnList = "token_hash", unique = true),
+        @Index(name = "idx_jwt_token_expires_at", columnList = "expires_at")
+})
 public class JwtUser {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private int id;
-    @Column(length = 600)
-    private String token;
+    private Long id;
+    //empreinte SHA-256 (hex) du token signé, jamais le token lui-même
+    @Column(columnDefinition = "char(64)")
+    private String tokenHash;
+    //token signé conservé uniquement le temps de la validation d'un nouvel appareil (/signin-validation)
+    @Column(length = 2048)
+    private String pendingToken;
     private Boolean desactive;
-    private Boolean expireAt;
+    private Instant issuedAt;
+    private Instant expiresAt;
     private Boolean pending=false;
     private UUID uuid;
     @Transient
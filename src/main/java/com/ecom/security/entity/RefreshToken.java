@@ -0,0 +1,48 @@
+package com.ecom.security.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "refresh_token", indexes = {
+        @Index(name = "uk_refresh_token_hash", columnList = "token_hash", unique = true),
+        @Index(name = "idx_refresh_token_family", columnList = "family"),
+        @Index(name = "idx_refresh_token_expires_at", columnList = "expires_at"),
+        @Index(name = "idx_refresh_token_email", columnList = "email")
+})
+public class RefreshToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    //empreinte SHA-256 (hex) du refresh token, jamais le token lui-même
+    @Column(columnDefinition = "char(64)")
+    private String tokenHash;
+    //tous les refresh tokens issus d'une même connexion : réutiliser un token déjà échangé révoque la famille
+    private UUID family;
+    private Long userId;
+    //appareil validé auquel le token est lié (empreinte comparée à chaque échange)
+    private Long devicesId;
+    @Column(columnDefinition = "char(64)")
+    private String deviceHash;
+    //époque de révocation au moment de la connexion : une nouvelle connexion rend le token inutilisable
+    private long epoch;
+    //claims du token d'accès copiés à la connexion : l'échange n'appelle pas users-service
+    private String email;
+    private String name;
+    private String username;
+    private String scope;
+    private Instant issuedAt;
+    private Instant expiresAt;
+    //renseigné quand le token est échangé contre le suivant
+    private Instant usedAt;
+    private boolean revoked;
+}
@@ -0,0 +1,22 @@
+package com.ecom.security.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "tech_client")
+public class TechClient {
+
+    //client technique autorisé sur /oauth2/token (client_credentials), relu à la demande (cache court)
+    @Id
+    private String clientId;
+    //secret déjà encodé en BCrypt, jamais en clair
+    private String secretHash;
+    //scopes séparés par des espaces
+    private String scopes;
+    private boolean enabled;
+}
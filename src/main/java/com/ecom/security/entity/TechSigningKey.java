@@ -0,0 +1,29 @@
+package com.ecom.security.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "tech_signing_key", indexes = @Index(name = "idx_tech_signing_key_expires_at", columnList = "expires_at"))
+public class TechSigningKey {
+
+    //clé de signature des tokens techniques, partagée par toutes les instances
+    @Id
+    private String kid;
+    private String algorithm;
+    //JWK privé chiffré (AES-GCM), jamais en clair en base
+    @Column(length = 8192)
+    private String encryptedJwk;
+    private Instant createdAt;
+    //publiée dans le JWKS dès sa création, utilisée pour signer à partir de activatesAt
+    private Instant activatesAt;
+    private Instant retiresAt;
+    //plus aucune vérification possible après expiresAt (retiresAt + durée de vie max des tokens)
+    private Instant expiresAt;
+}
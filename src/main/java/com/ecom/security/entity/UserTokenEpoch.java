@@ -0,0 +1,21 @@
+package com.ecom.security.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "user_token_epoch", indexes = @Index(name = "idx_user_token_epoch_updated_at", columnList = "updated_at"))
+public class UserTokenEpoch {
+
+    //une ligne par utilisateur : les tokens portant une époque plus ancienne sont révoqués
+    @Id
+    private Long userId;
+    private long epoch;
+    private Instant updatedAt;
+}
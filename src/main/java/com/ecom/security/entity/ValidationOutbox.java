@@ -0,0 +1,44 @@
+package com.ecom.security.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+//Demande d'envoi à validation-service, écrite dans la transaction du login et expédiée en tâche de fond
+@Entity
+@Table(name = "validation_outbox",
+        indexes = @Index(name = "idx_validation_outbox_status_next", columnList = "status, next_attempt_at"),
+        uniqueConstraints = @UniqueConstraint(name = "uk_validation_outbox_reference", columnNames = "reference"))
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Getter
+@Setter
+public class ValidationOutbox {
+
+    public enum Status { PENDING, SENT, FAILED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    //référence renvoyée au client dans "option" à la place de l'id de validation-service
+    private UUID reference;
+    private Long userId;
+    private String username;
+    private Long deviceId;
+    private String email;
+    private String type;
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private Status status;
+    private int attempts;
+    private Instant nextAttemptAt;
+    //instance qui détient le bail en cours (renouvelé avant chaque envoi)
+    private UUID claimToken;
+    private Instant createdAt;
+    private Instant sentAt;
+    @Column(length = 500)
+    private String lastError;
+}
@@ -3,13 +3,17 @@ package com.ecom.security.repository;
 import com.ecom.security.entity.DevicesId;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface DevicesIdRepository extends JpaRepository<DevicesId, Integer> {
 
-    Optional<DevicesId> findByDeviceId(String deviceId);
+    //recherche par l'index unique (device_hash, user_id)
+    Optional<DevicesId> findByDeviceHashAndUserId(String deviceHash, Long userId);
 
     Optional<DevicesId> findById(Long id);
 
+    //lignes créées avant l'empreinte, à rattraper (par id croissant : la plus ancienne d'un doublon est vue en premier)
+    List<DevicesId> findTop500ByDeviceHashIsNullAndDeviceIdIsNotNullAndIdGreaterThanOrderByIdAsc(Long id);
 
 }
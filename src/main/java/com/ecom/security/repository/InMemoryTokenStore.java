@@ -0,0 +1,77 @@
+package com.ecom.security.repository;
+
+import com.ecom.security.entity.JwtUser;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+//Tokens en mémoire, pour une instance unique ou les tests : chaque entrée expire avec son token, taille bornée
+//seuls les tokens en attente de validation d'appareil sont gardés (rien ne relit les autres)
+//un redémarrage perd les validations d'appareil en cours (l'utilisateur se reconnecte)
+public class InMemoryTokenStore implements TokenStore {
+
+    //uuid de validation -> token en attente
+    private final Cache<UUID, JwtUser> pending;
+
+    public InMemoryTokenStore(long maximumSize, MeterRegistry meterRegistry) {
+        this.pending = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new ExpireAtTokenExpiry())
+                .scheduler(Scheduler.systemScheduler())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, pending, "tokenStorePending");
+    }
+
+    @Override
+    public void save(JwtUser token) {
+        if (!Boolean.TRUE.equals(token.getPending()) || token.getUuid() == null
+                || token.getExpiresAt() == null || !token.getExpiresAt().isAfter(Instant.now())) {
+            return;
+        }
+        pending.put(token.getUuid(), token);
+    }
+
+    //retrait atomique de la map : un seul appelant obtient le token
+    @Override
+    public Optional<String> takePendingToken(UUID uuid, Instant now) {
+        JwtUser token = pending.asMap().remove(uuid);
+        if (token == null || !token.getExpiresAt().isAfter(now)) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(token.getPendingToken());
+    }
+
+    //les entrées expirent d'elles-mêmes
+    @Override
+    public int removeExpired(Instant now) {
+        pending.cleanUp();
+        return 0;
+    }
+
+    private static final class ExpireAtTokenExpiry implements Expiry<Object, JwtUser> {
+
+        @Override
+        public long expireAfterCreate(Object key, JwtUser token, long currentTime) {
+            return Math.max(0, Duration.between(Instant.now(), token.getExpiresAt()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(Object key, JwtUser token, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, token, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Object key, JwtUser token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.ecom.security.repository;
+
+import com.ecom.security.entity.JobLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+public interface JobLockRepository extends JpaRepository<JobLock, String> {
+
+    //prise du verrou s'il est libre (bail expiré) : 1 ligne modifiée pour une seule instance
+    @Transactional
+    @Modifying
+    @Query("UPDATE JobLock l SET l.lockedUntil = :until, l.lockedBy = :owner WHERE l.name = :name AND l.lockedUntil <= :now")
+    int acquire(String name, String owner, Instant now, Instant until);
+
+    //première prise : INSERT seul (pas de merge), en échec si une autre instance a créé la ligne au même moment
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO job_lock (name, locked_until, locked_by) VALUES (:name, :until, :owner)", nativeQuery = true)
+    int create(String name, String owner, Instant until);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE JobLock l SET l.lockedUntil = :now WHERE l.name = :name AND l.lockedBy = :owner")
+    int release(String name, String owner, Instant now);
+}
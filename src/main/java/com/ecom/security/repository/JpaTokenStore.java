@@ -0,0 +1,41 @@
+package com.ecom.security.repository;
+
+import com.ecom.security.entity.JwtUser;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+//Tokens en base (table jwt_token), comportement historique
+public class JpaTokenStore implements TokenStore {
+
+    private final JwtRepository jwtRepository;
+
+    public JpaTokenStore(JwtRepository jwtRepository) {
+        this.jwtRepository = jwtRepository;
+    }
+
+    @Override
+    public void save(JwtUser token) {
+        jwtRepository.save(token);
+    }
+
+    //UPDATE conditionnel : de deux validations simultanées, une seule obtient le token
+    @Override
+    @Transactional
+    public Optional<String> takePendingToken(UUID uuid, Instant now) {
+        Optional<JwtUser> jwt = jwtRepository.findByUuid(uuid);
+        if (jwt.isEmpty() || !Boolean.TRUE.equals(jwt.get().getPending()) || !jwt.get().getExpiresAt().isAfter(now)) {
+            return Optional.empty();
+        }
+        String token = jwt.get().getPendingToken();
+        //le token n'est remis qu'une fois : on ne garde plus que son empreinte
+        return jwtRepository.consumePending(jwt.get().getId()) == 1 ? Optional.ofNullable(token) : Optional.empty();
+    }
+
+    @Override
+    public int removeExpired(Instant now) {
+        return jwtRepository.deleteExpiredBefore(now);
+    }
+}
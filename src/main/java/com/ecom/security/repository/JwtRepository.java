@@ -2,24 +2,25 @@ package com.ecom.security.repository;
 
 
 import com.ecom.security.entity.JwtUser;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.stream.Stream;
 
-public interface JwtRepository extends CrudRepository<JwtUser, Integer> {
+public interface JwtRepository extends CrudRepository<JwtUser, Long> {
 
-    Optional<JwtUser> findByTokenAndDesactiveAndExpireAt(String valeur, boolean desactive, boolean expire);
-
-    @Query("FROM JwtUser j WHERE j.expireAt = :expireAt AND j.desactive = :desactive AND j.userId = :id")
-    Optional<JwtUser> findUserValidToken(Long id, boolean desactive, boolean expireAt);
-
-    @Query("FROM JwtUser j WHERE j.userId = :id")
-    Stream<JwtUser> findUser(Long id);
-
-    void deleteAllByExpireAtAndDesactive(boolean expire, boolean desactive);
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM JwtUser j WHERE j.expiresAt < :now")
+    int deleteExpiredBefore(Instant now);
 
     Optional<JwtUser> findByUuid(UUID uuid);
+
+    @Modifying
+    @Query("UPDATE JwtUser j SET j.pending = false, j.pendingToken = null WHERE j.id = :id AND j.pending = true")
+    int consumePending(Long id);
 }
@@ -0,0 +1,25 @@
+package com.ecom.security.repository;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+
+//SET ... PX et GETDEL (Redis 6.2+)
+public class RedisSharedCache implements SharedCache {
+
+    private final StringRedisTemplate redisTemplate;
+
+    public RedisSharedCache(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public void set(String key, String value, Duration ttl) {
+        redisTemplate.opsForValue().set(key, value, ttl);
+    }
+
+    @Override
+    public String getAndDelete(String key) {
+        return redisTemplate.opsForValue().getAndDelete(key);
+    }
+}
@@ -0,0 +1,36 @@
+package com.ecom.security.repository;
+
+import com.ecom.security.entity.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+
+    //recherche par l'index unique token_hash
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    //un seul échange gagnant si le même token est présenté deux fois en même temps
+    @Modifying
+    @Query("UPDATE RefreshToken r SET r.usedAt = :now WHERE r.id = :id AND r.usedAt IS NULL AND r.revoked = false")
+    int markUsed(Long id, Instant now);
+
+    @Modifying
+    @Query("UPDATE RefreshToken r SET r.revoked = true WHERE r.family = :family")
+    int revokeFamily(UUID family);
+
+    //utilisateur modifié dans users-service (mot de passe, rôles, activation) : ses sessions ne peuvent plus être prolongées
+    @Modifying
+    @Query("UPDATE RefreshToken r SET r.revoked = true WHERE r.email = :email AND r.revoked = false")
+    int revokeByEmail(String email);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RefreshToken r WHERE r.expiresAt < :now")
+    int deleteExpiredBefore(Instant now);
+}
@@ -0,0 +1,12 @@
+package com.ecom.security.repository;
+
+import java.time.Duration;
+
+//Cache clé-valeur partagé entre les instances (Redis en production, une implémentation locale en test)
+public interface SharedCache {
+
+    void set(String key, String value, Duration ttl);
+
+    //lecture et suppression atomiques : null si la clé est absente ou expirée
+    String getAndDelete(String key);
+}
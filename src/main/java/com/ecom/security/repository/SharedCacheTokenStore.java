@@ -0,0 +1,45 @@
+package com.ecom.security.repository;
+
+import com.ecom.security.entity.JwtUser;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+//Tokens dans un cache clé-valeur partagé : chaque clé expire avec son token, aucune purge ni écriture SQL
+//jwt:pending:<uuid> -> token en attente de validation d'appareil ; les autres tokens ne sont relus par personne et ne sont pas écrits
+public class SharedCacheTokenStore implements TokenStore {
+
+    private static final String PENDING = "jwt:pending:";
+
+    private final SharedCache cache;
+
+    public SharedCacheTokenStore(SharedCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public void save(JwtUser token) {
+        if (!Boolean.TRUE.equals(token.getPending()) || token.getUuid() == null || token.getPendingToken() == null) {
+            return;
+        }
+        Duration ttl = Duration.between(Instant.now(), token.getExpiresAt());
+        if (ttl.isNegative() || ttl.isZero()) {
+            return;
+        }
+        cache.set(PENDING + token.getUuid(), token.getPendingToken(), ttl);
+    }
+
+    //GETDEL : de deux validations simultanées, une seule obtient le token ; l'expiration est celle de la clé
+    @Override
+    public Optional<String> takePendingToken(UUID uuid, Instant now) {
+        return Optional.ofNullable(cache.getAndDelete(PENDING + uuid));
+    }
+
+    //les clés expirent d'elles-mêmes
+    @Override
+    public int removeExpired(Instant now) {
+        return 0;
+    }
+}
@@ -0,0 +1,21 @@
+package com.ecom.security.repository;
+
+import com.ecom.security.entity.TechClient;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+public interface TechClientRepository extends JpaRepository<TechClient, String> {
+
+    //recherche par la clé primaire : client actif uniquement
+    Optional<TechClient> findByClientIdAndEnabledTrue(String clientId);
+
+    //secret ré-encodé par le serveur d'autorisation (coût BCrypt relevé) après une authentification réussie
+    @Transactional
+    @Modifying
+    @Query("UPDATE TechClient c SET c.secretHash = :secretHash WHERE c.clientId = :clientId AND c.enabled = true")
+    int updateSecretHash(String clientId, String secretHash);
+}
@@ -0,0 +1,20 @@
+package com.ecom.security.repository;
+
+import com.ecom.security.entity.TechSigningKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface TechSigningKeyRepository extends JpaRepository<TechSigningKey, String> {
+
+    List<TechSigningKey> findByExpiresAtAfter(Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM TechSigningKey k WHERE k.expiresAt < :before")
+    int deleteExpiredBefore(Instant before);
+}
@@ -0,0 +1,22 @@
+package com.ecom.security.repository;
+
+import com.ecom.security.entity.JwtUser;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+//État des tokens utilisateur émis : token en attente de validation d'appareil (et, en jpa, historique des tokens émis)
+//implémentation choisie par security.token-store.type : jpa (défaut), memory (une seule instance) ou shared (cache clé-valeur partagé)
+//hors de ce store : la révocation (époque de l'utilisateur, TokenEpochService) et les refresh tokens restent en base
+public interface TokenStore {
+
+    //enregistre un token émis ; memory et shared ne gardent que ceux qui attendent la validation d'un nouvel appareil
+    void save(JwtUser token);
+
+    //remet le token en attente une seule fois, même sous appels concurrents ; vide si inconnu, déjà remis ou expiré
+    Optional<String> takePendingToken(UUID uuid, Instant now);
+
+    //purge des tokens expirés ; nombre de lignes supprimées (0 pour un store qui expire de lui-même)
+    int removeExpired(Instant now);
+}
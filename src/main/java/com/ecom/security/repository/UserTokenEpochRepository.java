@@ -0,0 +1,23 @@
+package com.ecom.security.repository;
+
+import com.ecom.security.entity.UserTokenEpoch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface UserTokenEpochRepository extends JpaRepository<UserTokenEpoch, Long> {
+
+    //une seule instruction : crée la ligne à la première connexion, l'incrémente ensuite (sans course entre deux premières connexions)
+    @Modifying
+    @Query(value = "INSERT INTO user_token_epoch (user_id, epoch, updated_at) VALUES (:userId, 1, :now) "
+            + "ON DUPLICATE KEY UPDATE epoch = epoch + 1, updated_at = :now", nativeQuery = true)
+    int increment(Long userId, Instant now);
+
+    @Query("SELECT e.epoch FROM UserTokenEpoch e WHERE e.userId = :userId")
+    long findEpoch(Long userId);
+
+    List<UserTokenEpoch> findByUpdatedAtAfter(Instant since);
+}
@@ -0,0 +1,29 @@
+package com.ecom.security.repository;
+
+import com.ecom.security.entity.ValidationOutbox;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public interface ValidationOutboxRepository extends JpaRepository<ValidationOutbox, Long> {
+
+    //verrou SKIP LOCKED : plusieurs instances peuvent vider la table sans se marcher dessus
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("FROM ValidationOutbox o WHERE o.status = :status AND o.nextAttemptAt <= :now ORDER BY o.id")
+    List<ValidationOutbox> lockDue(ValidationOutbox.Status status, Instant now, Pageable page);
+
+    //prolonge le bail juste avant l'envoi ; 0 si une autre instance a repris la demande entre-temps
+    @Modifying
+    @Query("UPDATE ValidationOutbox o SET o.nextAttemptAt = :until WHERE o.id = :id AND o.claimToken = :claimToken AND o.status = :status")
+    int renewLease(Long id, UUID claimToken, ValidationOutbox.Status status, Instant until);
+
+    @Modifying
+    @Query("DELETE FROM ValidationOutbox o WHERE o.status = :status AND o.sentAt < :before")
+    int deleteSentBefore(ValidationOutbox.Status status, Instant before);
+}
@@ -1,5 +1,6 @@
 package com.ecom.security.response;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -18,4 +19,20 @@ public class GlobalExceptionHandler {
         errorBody.put("option", ex.getDetails());
         return new ResponseEntity<>(errorBody, HttpStatus.FORBIDDEN);
     }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<?> handleServiceUnavailable(ServiceUnavailableException ex) {
+        Map<String, Object> errorBody = new HashMap<>();
+        errorBody.put("error", ex.getMessage());
+        return new ResponseEntity<>(errorBody, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<?> handleTooManyRequests(TooManyRequestsException ex) {
+        Map<String, Object> errorBody = new HashMap<>();
+        errorBody.put("error", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(errorBody);
+    }
 }
@@ -1,7 +1,12 @@
 package com.ecom.security.security;
 
 
+import com.ecom.security.config.CaffeineAuthorizationService;
 import com.ecom.security.config.JwtConfig;
+import com.ecom.security.config.TechClientRegisteredClientRepository;
+import com.ecom.security.config.TechClientsConfig;
+import com.ecom.security.repository.TechClientRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -15,22 +20,25 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtEncoder;
-import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.authentication.ClientSecretAuthenticationProvider;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
 import org.springframework.security.oauth2.server.authorization.config.annotation.web.configuration.OAuth2AuthorizationServerConfiguration;
+import org.springframework.security.oauth2.server.authorization.config.annotation.web.configurers.OAuth2AuthorizationServerConfigurer;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.UUID;
+import java.util.List;
 
 
 @Configuration
@@ -39,13 +47,23 @@ import java.util.UUID;
 public class ConfigurationSecurityApplication {
 
     private final JwtConfig jwtConfig;
+    private final TechClientsConfig techClientsConfig;
+    private final TechClientRepository techClientRepository;
+    //pas un bean PasswordEncoder : celui des utilisateurs (pool BCrypt borné) reste l'unique candidat par type
+    private final CachingClientSecretEncoder clientSecretEncoder;
     @Value("${client.id}")
     private String clientId;
     @Value("${client.secret}")
     private String clientSecret;
 
-    public ConfigurationSecurityApplication(JwtConfig jwtConfig) {
+    public ConfigurationSecurityApplication(JwtConfig jwtConfig, TechClientsConfig techClientsConfig,
+                                            TechClientRepository techClientRepository, MeterRegistry meterRegistry,
+                                            @Value("${security.oauth2.client-secret-cache.ttl:PT5M}") Duration secretCacheTtl,
+                                            @Value("${security.oauth2.client-secret-cache.maximum-size:1000}") long secretCacheSize) {
         this.jwtConfig = jwtConfig;
+        this.techClientsConfig = techClientsConfig;
+        this.techClientRepository = techClientRepository;
+        this.clientSecretEncoder = new CachingClientSecretEncoder(new BCryptPasswordEncoder(), secretCacheTtl, secretCacheSize, meterRegistry);
     }
 
     /*@Bean
@@ -61,29 +79,45 @@ public class ConfigurationSecurityApplication {
     public SecurityFilterChain authorizationServerSecurityFilterChain(HttpSecurity http) throws Exception {
 
         OAuth2AuthorizationServerConfiguration.applyDefaultSecurity(http);
+        //secret des clients vérifié via le cache des vérifications réussies, hors du pool BCrypt de /signin
+        http.getConfigurer(OAuth2AuthorizationServerConfigurer.class)
+                .clientAuthentication(clientAuthentication -> clientAuthentication
+                        .authenticationProviders(providers -> providers.forEach(provider -> {
+                            if (provider instanceof ClientSecretAuthenticationProvider clientSecretProvider) {
+                                clientSecretProvider.setPasswordEncoder(clientSecretEncoder);
+                            }
+                        })));
         return http.build();
     }
 
     // 2) RegisteredClient pour réception et création du tokenTechnique
+    //client historique (client.id / client.secret) et ceux de security.oauth2.clients en mémoire, ceux de la table tech_client relus à la demande
     @Bean
-    public RegisteredClientRepository registeredClientRepository(PasswordEncoder passwordEncoder) {
-
-        RegisteredClient registeredClient = RegisteredClient.withId(UUID.randomUUID().toString())
-                .clientId(clientId)
-                .clientSecret(passwordEncoder.encode(clientSecret))
-                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
-                .scope("users:read")
-                .scope("users:write")
-                .build();
+    public RegisteredClientRepository registeredClientRepository(MeterRegistry meterRegistry,
+                                                                 @Value("${security.oauth2.tech-client-cache.ttl:PT30S}") Duration techClientCacheTtl,
+                                                                 @Value("${security.oauth2.tech-client-cache.maximum-size:1000}") long techClientCacheSize) {
+        List<RegisteredClient> registeredClients = new ArrayList<>();
+        registeredClients.add(TechClientRegisteredClientRepository.techClient(clientId, clientSecretEncoder.encode(clientSecret), List.of("users:read", "users:write")));
+        for (TechClientsConfig.Client client : techClientsConfig.clients()) {
+            registeredClients.add(TechClientRegisteredClientRepository.techClient(client.id(), clientSecretEncoder.encode(client.secret()), client.scopes()));
+        }
+        return new TechClientRegisteredClientRepository(registeredClients, techClientRepository, techClientCacheTtl, techClientCacheSize, meterRegistry);
+    }
 
-        return new InMemoryRegisteredClientRepository(registeredClient);
+    // 2 bis) Autorisations émises par /oauth2/token : store borné, expiré à la fin de vie des tokens
+    @Bean
+    public OAuth2AuthorizationService authorizationService(MeterRegistry meterRegistry,
+                                                           @Value("${security.oauth2.authorization.maximum-size:10000}") long maximumSize,
+                                                           @Value("${security.oauth2.authorization.default-ttl:PT10M}") Duration defaultTtl,
+                                                           @Value("${security.oauth2.authorization.persist-client-credentials:true}") boolean persistClientCredentials) {
+        return new CaffeineAuthorizationService(maximumSize, defaultTtl, persistClientCredentials, meterRegistry);
     }
 
     // 3) Resource Server pour les endpoints internes protégés par token technique
     @Bean
     @Order(2)
     public SecurityFilterChain internalServiceSecurityFilterChain(
-            HttpSecurity http
+            HttpSecurity http, @Qualifier("techJwtDecoder") JwtDecoder techJwtDecoder
     ) throws Exception {
         http
                 .securityMatcher("/_internal/**")
@@ -92,7 +126,7 @@ public class ConfigurationSecurityApplication {
                 .sessionManagement(sm -> sm.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth.anyRequest().authenticated())
                 .oauth2ResourceServer(oauth2 -> oauth2
-                        .jwt(jwt -> jwt.decoder(jwtConfig.techJwtDecoder(jwtConfig.techRsaKey())))
+                        .jwt(jwt -> jwt.decoder(techJwtDecoder))
                 );
         return http.build();
     }
@@ -108,6 +142,7 @@ public class ConfigurationSecurityApplication {
                         .requestMatchers(new AntPathRequestMatcher("/actuator/**")).permitAll()
                         .requestMatchers(new AntPathRequestMatcher("/signin")).permitAll()
                         .requestMatchers(new AntPathRequestMatcher("/signin-validation")).permitAll()
+                        .requestMatchers(new AntPathRequestMatcher("/signin-refresh")).permitAll()
                         .anyRequest().authenticated())
                 .sessionManagement(sess -> sess.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .oauth2ResourceServer(oauth2 -> oauth2
@@ -0,0 +1,32 @@
+package com.ecom.security.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+
+//Empreintes SHA-256 des valeurs sensibles (tokens, deviceId) : on indexe l'empreinte, jamais la valeur
+public final class Digests {
+
+    private Digests() {
+    }
+
+    public static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+
+    //64 caractères hexadécimaux, adapté à une colonne CHAR(64) indexée
+    public static String sha256Hex(String value) {
+        return HexFormat.of().formatHex(sha256(value));
+    }
+
+    //43 caractères, adapté aux clés de cache en mémoire
+    public static String sha256Base64(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sha256(value));
+    }
+}
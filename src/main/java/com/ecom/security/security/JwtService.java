@@ -5,15 +5,19 @@ import com.ecom.security.config.JwtConfig;
 import com.ecom.security.dto.ValidationDto;
 import com.ecom.security.entity.DevicesId;
 import com.ecom.security.entity.JwtUser;
+import com.ecom.security.entity.RefreshToken;
+import com.ecom.security.entity.ValidationOutbox;
 import com.ecom.security.model.User;
 import com.ecom.security.model.Validation;
 import com.ecom.security.repository.DevicesIdRepository;
-import com.ecom.security.repository.JwtRepository;
+import com.ecom.security.repository.TokenStore;
+import com.ecom.security.repository.ValidationOutboxRepository;
 import com.ecom.security.response.UserNotFoundException;
 import com.ecom.security.service.TokenMicroService;
 import com.ecom.security.service.UserDetailsImpl;
 import com.ecom.security.service.UserDetailsServiceImpl;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -21,58 +25,64 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.oauth2.jwt.*;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.stream.Collectors;
 
-@Transactional
+//pas de transaction globale : chaque lecture / écriture a sa propre transaction courte
+//et les appels distants (validation-service) comme la signature se font sans connexion JDBC retenue
 @Slf4j
 @Service
 public class JwtService {
     public static final String BAERER = "bearer";
     public static final String REFRESH_TOKEN = "refreshToken";
+    public static final Duration ACCESS_TOKEN_TTL = Duration.ofMinutes(30);
 
     private final DevicesIdRepository devicesRepository;
-    private final JwtRepository jwtRepository;
+    private final TokenStore tokenStore;
     private final JwtConfig jwtConfig;
     private final ValidationRestClient validationRestClient;
     private final TokenMicroService tokenMicroService;
+    private final TokenEpochService tokenEpochService;
+    private final ValidationOutboxRepository validationOutboxRepository;
+    private final TransactionOperations transactionOperations;
+    private final SigninMetrics signinMetrics;
+    private final RefreshTokenService refreshTokenService;
+    //envoi des validations via l'outbox (option = référence locale) plutôt qu'en direct pendant le login
+    @Value("${security.validation.outbox.enabled:false}")
+    private boolean validationOutboxEnabled;
 
-    public JwtService(JwtConfig jwtConfig, JwtRepository jwtRepository, DevicesIdRepository devicesRepository, ValidationRestClient validationRestClient, TokenMicroService tokenMicroService) {
+    public JwtService(JwtConfig jwtConfig, TokenStore tokenStore, DevicesIdRepository devicesRepository, ValidationRestClient validationRestClient, TokenMicroService tokenMicroService, TokenEpochService tokenEpochService, ValidationOutboxRepository validationOutboxRepository, TransactionOperations transactionOperations, SigninMetrics signinMetrics, RefreshTokenService refreshTokenService) {
         this.jwtConfig = jwtConfig;
-        this.jwtRepository = jwtRepository;
+        this.tokenStore = tokenStore;
         this.devicesRepository = devicesRepository;
         this.validationRestClient = validationRestClient;
         this.tokenMicroService = tokenMicroService;
+        this.tokenEpochService = tokenEpochService;
+        this.validationOutboxRepository = validationOutboxRepository;
+        this.transactionOperations = transactionOperations;
+        this.signinMetrics = signinMetrics;
+        this.refreshTokenService = refreshTokenService;
     }
 
     public ResponseEntity<Map<String, String>> generate(UserDetails userDetails, String deviceId) {
         //je prepare un UUID
         UUID uuidToken = UUID.randomUUID();
         //je récupère l'utilisateur
-        User user =null;
-        if (userDetails instanceof UserDetailsImpl customUserDetails) {
-            user = customUserDetails.getUser();
-        } else {
+        if (!(userDetails instanceof UserDetailsImpl customUserDetails)) {
             throw new UserNotFoundException("utilisateur non trouvée");
         }
+        final User user = customUserDetails.getUser();
         //autorisation ADMIN sans deviceID
         if ("admin@admin.com".equals(user.getEmail())) {
             this.disableTokens(user); // désactiver les anciens tokens
             final Map<String, String> jwtMap = this.generateJwt(user);
 
-            JwtUser jwtUser = JwtUser.builder()
-                    .token(jwtMap.get(BAERER))
-                    .desactive(false)
-                    .expireAt(false)
-                    .uuid(uuidToken)
-                    .userId(user.getId())
-                    .build();
+            JwtUser jwtUser = this.tokenRecord(user, jwtMap.get(BAERER), uuidToken, false);
 
-            jwtRepository.save(jwtUser);
+            signinMetrics.run(SigninMetrics.TOKEN_SAVE, () -> tokenStore.save(jwtUser));
 
             return new ResponseEntity<>(jwtMap, HttpStatus.OK);
         }
@@ -81,11 +91,8 @@ public class JwtService {
         if (!user.getActive()){
 
             //on renvoi un code de validation
-            Validation validationId = this.validationRestClient.sendValidation("Bearer "+this.tokenMicroService.tokenService(), new ValidationDto(user.getId(),user.getUsername(), null, user.getEmail(), "registration"));
-            if(validationId.getId()==null){
-                throw new UserNotFoundException("Service indisponible");
-            }
-            throw new UserNotFoundException("Compte non activé", validationId.getId().toString());
+            String option = this.requestValidation(new ValidationDto(user.getId(),user.getUsername(), null, user.getEmail(), "registration"));
+            throw new UserNotFoundException("Compte non activé", option);
         }
         //je vérifie que le deviceId nous a bien été transmit
         if (deviceId == null) {
@@ -93,55 +100,44 @@ public class JwtService {
         }
 
 
-        //je verifie le deviceId existe en Bdd
-        Optional<DevicesId> userDevices = this.devicesRepository.findByDeviceId(deviceId);
+        //je verifie le deviceId existe en Bdd pour cet utilisateur (via son empreinte)
+        String deviceHash = Digests.sha256Hex(deviceId);
+        Optional<DevicesId> userDevices = signinMetrics.time(SigninMetrics.DEVICE_LOOKUP,
+                () -> this.devicesRepository.findByDeviceHashAndUserId(deviceHash, user.getId()));
         //si le deviceId n'est pas present
         if (userDevices.isEmpty()){
 
             DevicesId newUserDevices = new DevicesId();
-            newUserDevices.setDeviceId(deviceId);
+            newUserDevices.setDeviceHash(deviceHash);
             newUserDevices.setUserId(user.getId());
             newUserDevices.setActive(false);
             newUserDevices.setCreatedAt(Instant.now());
-            this.devicesRepository.save(newUserDevices);
-
-            //on envoie une demande de validation
-            Validation validationId = this.validationRestClient.sendValidation("Bearer "+this.tokenMicroService.tokenService(),new ValidationDto(user.getId(),user.getUsername(), newUserDevices.getId(), user.getEmail(), "deviceId"));
-            if(validationId.getId()==null){
-                throw new UserNotFoundException("Service indisponible");
-            }
+            //avec l'outbox, l'appareil et la demande de validation sont écrits dans la même transaction courte
+            //sans outbox, l'appareil est enregistré puis validation-service est appelé hors transaction
+            String option = validationOutboxEnabled
+                    ? this.transactionOperations.execute(status -> this.registerDevice(user, newUserDevices))
+                    : this.registerDevice(user, newUserDevices);
 
             //je désactive tous les anciens token en Bdd
             this.disableTokens(user);
             //je genere le token
             final Map<String, String> jwtMap = this.generateJwt(user);
             //j'ajoute le token en bbd
-            JwtUser jwtUser = JwtUser
-                    .builder()
-                    .token(jwtMap.get(BAERER))
-                    .desactive(false)
-                    .expireAt(false)
-                    .pending(true)
-                    .uuid(uuidToken)
-                    .userId(user.getId())
-                    .build();
+            JwtUser jwtUser = this.tokenRecord(user, jwtMap.get(BAERER), uuidToken, true);
             //je sauvegarde
-            jwtRepository.save(jwtUser);
+            signinMetrics.run(SigninMetrics.TOKEN_SAVE, () -> tokenStore.save(jwtUser));
 
             return new ResponseEntity<>(Map.of(
                             "error", "Nouvel appareil détecté",
-                            "option", validationId.getId().toString(),
+                            "option", option,
                             "uuid", uuidToken.toString()), HttpStatus.FORBIDDEN);
             //si le deviceId est present mais pas validé
         } if (!userDevices.get().getActive()) {
             //on envoi une validation mail
-            Validation validationId = this.validationRestClient.sendValidation("Bearer "+this.tokenMicroService.tokenService(),new ValidationDto(user.getId(),user.getUsername(), userDevices.get().getId(), user.getEmail(), "deviceId"));
-            if(validationId.getId()==null){
-                throw new UserNotFoundException("Service indisponible");
-            }
+            String option = this.requestValidation(new ValidationDto(user.getId(),user.getUsername(), userDevices.get().getId(), user.getEmail(), "deviceId"));
             return new ResponseEntity<>(Map.of(
                     "error", "Nouvel appareil détecté",
-                    "option", validationId.getId().toString(),
+                    "option", option,
                     "uuid", uuidToken.toString()), HttpStatus.FORBIDDEN);
         }
 
@@ -150,48 +146,121 @@ public class JwtService {
         //je génère le token
         final Map<String, String> jwtMap = this.generateJwt(user);
         //j'ajoute le token en bbd
-        JwtUser jwtUser = JwtUser
-                .builder()
-                .token(jwtMap.get(BAERER))
-                .desactive(false)
-                .expireAt(false)
-                .userId(user.getId())
-                .build();
-        //je sauvegarde
-        jwtRepository.save(jwtUser);
-        return new ResponseEntity<>(this.generateJwt(user), HttpStatus.OK);
+        JwtUser jwtUser = this.tokenRecord(user, jwtMap.get(BAERER), null, false);
+        //je sauvegarde, avec le refresh token lié à cet appareil validé
+        String refreshToken = signinMetrics.time(SigninMetrics.TOKEN_SAVE, () -> {
+            tokenStore.save(jwtUser);
+            return refreshTokenService.issue(user, userDevices.get());
+        });
+        //on renvoie le token déjà signé plutôt que d'en signer un second
+        return new ResponseEntity<>(Map.of(BAERER, jwtMap.get(BAERER), REFRESH_TOKEN, refreshToken), HttpStatus.OK);
 
     }
 
+    //enregistre le nouvel appareil puis demande son code de validation
+    private String registerDevice(User user, DevicesId newUserDevices) {
+        this.devicesRepository.save(newUserDevices);
+        try {
+            return this.requestValidation(new ValidationDto(user.getId(),user.getUsername(), newUserDevices.getId(), user.getEmail(), "deviceId"));
+        } catch (RuntimeException e) {
+            //sans outbox l'appareil est déjà commité : on le retire, sinon la connexion suivante le trouverait inactif sans code envoyé
+            if (!validationOutboxEnabled) {
+                this.devicesRepository.delete(newUserDevices);
+            }
+            throw e;
+        }
+    }
+
+    //demande de code de validation, renvoie l'identifiant transmis au client dans "option"
+    private String requestValidation(ValidationDto validationDto) {
+        return signinMetrics.time(SigninMetrics.SEND_VALIDATION,
+                () -> validationOutboxEnabled ? this.enqueueValidation(validationDto) : this.sendValidation(validationDto));
+    }
+
+    //expédié en tâche de fond par ValidationOutboxDispatcher
+    private String enqueueValidation(ValidationDto validationDto) {
+        UUID reference = UUID.randomUUID();
+        Instant now = Instant.now();
+        validationOutboxRepository.save(ValidationOutbox.builder()
+                .reference(reference)
+                .userId(validationDto.getUserId())
+                .username(validationDto.getUsername())
+                .deviceId(validationDto.getDeviceId())
+                .email(validationDto.getEmail())
+                .type(validationDto.getType())
+                .status(ValidationOutbox.Status.PENDING)
+                .createdAt(now)
+                .nextAttemptAt(now)
+                .build());
+        return reference.toString();
+    }
+
+    private String sendValidation(ValidationDto validationDto) {
+        Validation validationId = this.validationRestClient.sendValidation("Bearer "+this.tokenMicroService.tokenService(), validationDto);
+        if(validationId.getId()==null){
+            throw new UserNotFoundException("Service indisponible");
+        }
+        return validationId.getId().toString();
+    }
+
+    //nouveau token d'accès contre un refresh token : ni users-service, ni BCrypt, ni contrôle d'appareil
+    public Map<String, String> refresh(String refreshToken, String deviceId) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshToken, deviceId);
+        RefreshToken grant = rotation.grant();
+        String bearer = this.generateJwt(grant.getUserId(), grant.getEmail(), grant.getName(), grant.getUsername(), grant.getScope()).get(BAERER);
+        return Map.of(BAERER, bearer, REFRESH_TOKEN, rotation.refreshToken());
+    }
+
     public Map<String, String> generateJwt(User user) {
-        Map<String, String> idToken = new HashMap<>();
+        return this.generateJwt(user.getId(), user.getEmail(), user.getName(), user.getUsername(), user.getAuthorities());
+    }
+
+    private Map<String, String> generateJwt(Long userId, String email, String name, String username, String scope) {
         Instant instant = Instant.now();
         JwtClaimsSet jwtClaimsSet = JwtClaimsSet.builder()
-                .subject(user.getEmail())
+                .subject(email)
+                //jti aléatoire : deux connexions dans la même seconde ne produisent pas le même token (token_hash unique)
+                .id(UUID.randomUUID().toString())
                 .issuedAt(instant)
-                .expiresAt(instant.plus(30, ChronoUnit.MINUTES))
+                .expiresAt(instant.plus(ACCESS_TOKEN_TTL))
                 .issuer("security-service")
-                .claim("scope",user.getAuthorities())
-                .claim("name", user.getName())
-                .claim("username", user.getUsername())
-                .claim("id", user.getId())
+                .claim("scope", scope)
+                .claim("name", name)
+                .claim("username", username)
+                .claim("id", userId)
+                .claim(TokenEpochValidator.EPOCH_CLAIM, tokenEpochService.current(userId))
                 .build();
-        String jwtAccessToken = jwtConfig.userJwtEncoder().encode(JwtEncoderParameters.from(jwtClaimsSet)).getTokenValue();
-        idToken.put("accessToken", jwtAccessToken);
+        String jwtAccessToken = signinMetrics.time(SigninMetrics.SIGN,
+                () -> jwtConfig.userJwtEncoder().encode(JwtEncoderParameters.from(jwtClaimsSet)).getTokenValue());
 
         return Map.of("bearer", jwtAccessToken);
     }
 
 
+    //seule l'empreinte du token est stockée ; le token n'est gardé que pour une validation d'appareil en attente
+    private JwtUser tokenRecord(User user, String token, UUID uuid, boolean pending) {
+        Instant now = Instant.now();
+        return JwtUser.builder()
+                .tokenHash(Digests.sha256Hex(token))
+                .pendingToken(pending ? token : null)
+                .desactive(false)
+                .issuedAt(now)
+                .expiresAt(now.plus(ACCESS_TOKEN_TTL))
+                .pending(pending)
+                .uuid(uuid)
+                .userId(user.getId())
+                .build();
+    }
+
+    //révoque tous les tokens déjà émis en passant l'utilisateur à l'époque suivante (un seul UPDATE)
     public void disableTokens(User user) {
-        final List<JwtUser> jwtList = this.jwtRepository.findUser(user.getId()).collect(Collectors.toList());
-        this.jwtRepository.deleteAll(jwtList);
+        signinMetrics.run(SigninMetrics.DISABLE_TOKENS, () -> this.tokenEpochService.bump(user.getId()));
     }
 
 
-    @Scheduled(cron= "@monthly")
+    @Scheduled(cron= "${security.jwt.cleanup-cron:@daily}")
     public void removeUselessJwt(){
-        this.jwtRepository.deleteAllByExpireAtAndDesactive(true, true);
+        this.tokenStore.removeExpired(Instant.now());
     }
 
 }
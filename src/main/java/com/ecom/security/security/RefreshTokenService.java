@@ -0,0 +1,150 @@
+package com.ecom.security.security;
+
+import com.ecom.security.entity.DevicesId;
+import com.ecom.security.entity.RefreshToken;
+import com.ecom.security.model.User;
+import com.ecom.security.repository.DevicesIdRepository;
+import com.ecom.security.repository.RefreshTokenRepository;
+import com.ecom.security.response.UserNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+//Refresh tokens opaques, à usage unique : chaque échange renvoie le suivant (rotation)
+//un token lié à l'appareil validé et à l'époque de la connexion ; seule son empreinte est stockée
+@Slf4j
+@Service
+public class RefreshTokenService {
+
+    private final RefreshTokenRepository repository;
+    private final DevicesIdRepository devicesRepository;
+    private final TokenEpochService tokenEpochService;
+    private final SecureRandom secureRandom = new SecureRandom();
+    @Value("${security.refresh-token.ttl:P14D}")
+    private Duration ttl;
+    //double envoi légitime (deux onglets, nouvelle tentative du client) : refusé sans révoquer la famille
+    @Value("${security.refresh-token.reuse-grace:PT10S}")
+    private Duration reuseGrace;
+
+    public RefreshTokenService(RefreshTokenRepository repository, DevicesIdRepository devicesRepository, TokenEpochService tokenEpochService) {
+        this.repository = repository;
+        this.devicesRepository = devicesRepository;
+        this.tokenEpochService = tokenEpochService;
+    }
+
+    //première émission, à la connexion sur un appareil validé
+    public String issue(User user, DevicesId device) {
+        String value = newValue();
+        Instant now = Instant.now();
+        repository.save(RefreshToken.builder()
+                .tokenHash(Digests.sha256Hex(value))
+                .family(UUID.randomUUID())
+                .userId(user.getId())
+                .devicesId(device.getId())
+                .deviceHash(device.getDeviceHash())
+                .epoch(tokenEpochService.current(user.getId()))
+                .email(user.getEmail())
+                .name(user.getName())
+                .username(user.getUsername())
+                .scope(user.getAuthorities())
+                .issuedAt(now)
+                .expiresAt(now.plus(ttl))
+                .build());
+        return value;
+    }
+
+    //échange : une lecture par l'index token_hash, le token présenté est consommé et remplacé
+    //la révocation d'une famille doit survivre à l'exception qui refuse l'échange
+    @Transactional(noRollbackFor = UserNotFoundException.class)
+    public Rotation rotate(String value, String deviceId) {
+        if (value == null || deviceId == null) {
+            throw invalid();
+        }
+        Instant now = Instant.now();
+        RefreshToken current = repository.findByTokenHash(Digests.sha256Hex(value)).orElseThrow(RefreshTokenService::invalid);
+        if (current.isRevoked() || !current.getExpiresAt().isAfter(now)) {
+            throw invalid();
+        }
+        if (current.getUsedAt() != null) {
+            //token déjà échangé présenté à nouveau bien après l'échange : probablement volé, toute la famille est révoquée
+            if (current.getUsedAt().plus(reuseGrace).isBefore(now)) {
+                revokeFamily(current);
+            }
+            throw invalid();
+        }
+        if (!Digests.sha256Hex(deviceId).equals(current.getDeviceHash())) {
+            throw invalid();
+        }
+        //appareil supprimé ou désactivé depuis la connexion : plus d'échange possible
+        if (devicesRepository.findById(current.getDevicesId()).filter(device -> Boolean.TRUE.equals(device.getActive())).isEmpty()) {
+            throw invalid();
+        }
+        //une connexion plus récente (ou une révocation) a fait passer l'utilisateur à l'époque suivante
+        if (!tokenEpochService.isCurrent(current.getUserId(), current.getEpoch())) {
+            throw invalid();
+        }
+        //échange concurrent du même token perdu (ou famille révoquée entre-temps) : simple refus
+        if (repository.markUsed(current.getId(), now) == 0) {
+            throw invalid();
+        }
+
+        String next = newValue();
+        repository.save(RefreshToken.builder()
+                .tokenHash(Digests.sha256Hex(next))
+                .family(current.getFamily())
+                .userId(current.getUserId())
+                .devicesId(current.getDevicesId())
+                .deviceHash(current.getDeviceHash())
+                .epoch(current.getEpoch())
+                .email(current.getEmail())
+                .name(current.getName())
+                .username(current.getUsername())
+                .scope(current.getScope())
+                .issuedAt(now)
+                .expiresAt(now.plus(ttl))
+                .build());
+        return new Rotation(current, next);
+    }
+
+    //les claims recopiés à la connexion (rôles, activation) ne sont plus à jour : reconnexion obligatoire
+    @Transactional
+    public int revokeUser(String email) {
+        int revoked = repository.revokeByEmail(email.trim());
+        if (revoked > 0) {
+            log.info("{} refresh tokens révoqués pour l'utilisateur {}", revoked, email);
+        }
+        return revoked;
+    }
+
+    @Scheduled(cron = "${security.refresh-token.cleanup-cron:@daily}")
+    public void removeExpired() {
+        repository.deleteExpiredBefore(Instant.now());
+    }
+
+    private void revokeFamily(RefreshToken token) {
+        repository.revokeFamily(token.getFamily());
+        log.warn("Refresh token réutilisé pour l'utilisateur {}, famille {} révoquée", token.getUserId(), token.getFamily());
+    }
+
+    private String newValue() {
+        byte[] bytes = new byte[32];
+        secureRandom.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static UserNotFoundException invalid() {
+        return new UserNotFoundException("Session expirée");
+    }
+
+    //token échangé (claims du token d'accès) et valeur du refresh token suivant
+    public record Rotation(RefreshToken grant, String refreshToken) {
+    }
+}
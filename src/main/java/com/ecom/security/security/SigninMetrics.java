@@ -0,0 +1,92 @@
+package com.ecom.security.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+//Durée de chaque étape de /signin : les étapes sont mesurées pendant la requête
+//puis publiées à la fin avec le résultat du login (ok, nouvel appareil, compte inactif...)
+@Component
+public class SigninMetrics {
+
+    public static final String OK = "ok";
+    public static final String NEW_DEVICE = "new_device";
+    public static final String INACTIVE_ACCOUNT = "inactive_account";
+    public static final String BAD_CREDENTIALS = "bad_credentials";
+    public static final String REJECTED = "rejected";
+    public static final String ERROR = "error";
+
+    public static final String USERS_FETCH = "users_fetch";
+    public static final String PASSWORD_CHECK = "password_check";
+    public static final String DEVICE_LOOKUP = "device_lookup";
+    public static final String SEND_VALIDATION = "send_validation";
+    public static final String SIGN = "sign";
+    public static final String DISABLE_TOKENS = "disable_tokens";
+    public static final String TOKEN_SAVE = "token_save";
+
+    private final MeterRegistry meterRegistry;
+    private final ThreadLocal<List<Phase>> current = new ThreadLocal<>();
+
+    public SigninMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void start() {
+        List<Phase> phases = new ArrayList<>(8);
+        phases.add(new Phase(null, System.nanoTime()));
+        current.set(phases);
+    }
+
+    //hors d'un /signin en cours, l'étape est simplement exécutée
+    public <T> T time(String phase, Supplier<T> body) {
+        List<Phase> phases = current.get();
+        if (phases == null) {
+            return body.get();
+        }
+        long start = System.nanoTime();
+        try {
+            return body.get();
+        } finally {
+            phases.add(new Phase(phase, System.nanoTime() - start));
+        }
+    }
+
+    public void run(String phase, Runnable body) {
+        time(phase, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    public void finish(String outcome) {
+        List<Phase> phases = current.get();
+        if (phases == null) {
+            return;
+        }
+        current.remove();
+        //le premier élément garde l'instant de départ de la requête
+        long total = System.nanoTime() - phases.get(0).nanos();
+        for (Phase phase : phases.subList(1, phases.size())) {
+            timer("security.signin.phase", outcome, phase.name()).record(phase.nanos(), TimeUnit.NANOSECONDS);
+        }
+        timer("security.signin", outcome, null).record(total, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(String name, String outcome, String phase) {
+        Timer.Builder builder = Timer.builder(name)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram();
+        if (phase != null) {
+            builder.tag("phase", phase);
+        }
+        return builder.register(meterRegistry);
+    }
+
+    private record Phase(String name, long nanos) {
+    }
+}
@@ -0,0 +1,109 @@
+package com.ecom.security.security;
+
+import com.ecom.security.response.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+
+//Limite les tentatives de /signin par adresse IP, les échecs par compte depuis une même IP,
+//et plus largement les échecs par compte toutes IP confondues (attaque répartie sur beaucoup d'adresses),
+//avant tout appel à users-service et toute vérification BCrypt
+@Slf4j
+@Service
+public class SigninRateLimiter {
+
+    private final boolean enabled;
+    private final TokenBucketLimiter byIp;
+    private final TokenBucketLimiter byEmailIp;
+    private final TokenBucketLimiter byAccount;
+    private final Counter ipRejected;
+    private final Counter emailIpRejected;
+    private final Counter accountRejected;
+
+    public SigninRateLimiter(MeterRegistry meterRegistry,
+                             @Value("${security.signin.rate-limit.enabled:true}") boolean enabled,
+                             @Value("${security.signin.rate-limit.ip.capacity:30}") int ipCapacity,
+                             @Value("${security.signin.rate-limit.ip.refill:PT2S}") Duration ipRefill,
+                             @Value("${security.signin.rate-limit.email.capacity:5}") int emailCapacity,
+                             @Value("${security.signin.rate-limit.email.refill:PT30S}") Duration emailRefill,
+                             @Value("${security.signin.rate-limit.account.capacity:50}") int accountCapacity,
+                             @Value("${security.signin.rate-limit.account.refill:PT1M}") Duration accountRefill,
+                             @Value("${security.signin.rate-limit.maximum-keys:100000}") long maximumKeys) {
+        this.enabled = enabled;
+        this.byIp = new TokenBucketLimiter(ipCapacity, ipRefill, maximumKeys);
+        this.byEmailIp = new TokenBucketLimiter(emailCapacity, emailRefill, maximumKeys);
+        this.byAccount = new TokenBucketLimiter(accountCapacity, accountRefill, maximumKeys);
+        this.ipRejected = rejectedCounter(meterRegistry, "ip");
+        this.emailIpRejected = rejectedCounter(meterRegistry, "email-ip");
+        this.accountRejected = rejectedCounter(meterRegistry, "account");
+        Gauge.builder("security.signin.rate-limit.buckets", byIp, TokenBucketLimiter::size).tag("key", "ip").register(meterRegistry);
+        Gauge.builder("security.signin.rate-limit.buckets", byEmailIp, TokenBucketLimiter::size).tag("key", "email-ip").register(meterRegistry);
+        Gauge.builder("security.signin.rate-limit.buckets", byAccount, TokenBucketLimiter::size).tag("key", "account").register(meterRegistry);
+    }
+
+    //les seaux du compte ne sont que consultés ici : seuls les échecs les vident (recordFailure)
+    public void check(String email, String clientIp) {
+        if (!enabled) {
+            return;
+        }
+        String ipKey = ipKey(clientIp);
+        if (!byIp.tryAcquire(ipKey)) {
+            ipRejected.increment();
+            throw rejected(byIp.retryAfter(ipKey));
+        }
+        String emailIpKey = emailIpKey(email, clientIp);
+        Duration wait = byEmailIp.retryAfter(emailIpKey);
+        if (!wait.isZero()) {
+            emailIpRejected.increment();
+            log.debug("Trop d'échecs de connexion pour {}", emailIpKey);
+            throw rejected(wait);
+        }
+        String accountKey = accountKey(email);
+        wait = byAccount.retryAfter(accountKey);
+        if (!wait.isZero()) {
+            accountRejected.increment();
+            log.debug("Trop d'échecs de connexion sur le compte {}, toutes adresses confondues", accountKey);
+            throw rejected(wait);
+        }
+    }
+
+    //mot de passe refusé : compté par compte et IP (seuil bas, n'atteint pas le titulaire sur une autre adresse)
+    //et par compte seul (seuil large, freine une attaque répartie sur beaucoup d'adresses)
+    public void recordFailure(String email, String clientIp) {
+        if (enabled) {
+            byEmailIp.tryAcquire(emailIpKey(email, clientIp));
+            byAccount.tryAcquire(accountKey(email));
+        }
+    }
+
+    private static String ipKey(String clientIp) {
+        return clientIp == null ? "" : clientIp;
+    }
+
+    private static String accountKey(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String emailIpKey(String email, String clientIp) {
+        return accountKey(email) + "|" + ipKey(clientIp);
+    }
+
+    private static TooManyRequestsException rejected(Duration retryAfter) {
+        //Retry-After en secondes entières, au moins 1
+        long seconds = Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+        return new TooManyRequestsException("Trop de tentatives de connexion, réessayez plus tard", seconds);
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, String key) {
+        return Counter.builder("security.signin.rate-limited")
+                .description("Tentatives de /signin refusées par le limiteur")
+                .tag("key", key)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,30 @@
+package com.ecom.security.security;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+//Mesure la vérification BCrypt comme une étape à part de /signin
+public class TimedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final SigninMetrics signinMetrics;
+
+    public TimedPasswordEncoder(PasswordEncoder delegate, SigninMetrics signinMetrics) {
+        this.delegate = delegate;
+        this.signinMetrics = signinMetrics;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return signinMetrics.time(SigninMetrics.PASSWORD_CHECK, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+}
@@ -0,0 +1,70 @@
+package com.ecom.security.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+//Seau à jetons par clé, sans verrou : l'état d'un seau tient dans un seul long (GCRA, "theoretical arrival time")
+//capacité = rafale autorisée, un jeton regagné toutes les "refill" ; un seau inactif assez longtemps pour être plein est retiré
+public class TokenBucketLimiter {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final LongSupplier nanoTime;
+    private final Cache<String, Bucket> buckets;
+
+    public TokenBucketLimiter(int capacity, Duration refill, long maximumKeys) {
+        this(capacity, refill, maximumKeys, System::nanoTime);
+    }
+
+    TokenBucketLimiter(int capacity, Duration refill, long maximumKeys, LongSupplier nanoTime) {
+        this.intervalNanos = refill.toNanos();
+        this.burstNanos = intervalNanos * capacity;
+        this.nanoTime = nanoTime;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterAccess(Duration.ofNanos(burstNanos))
+                .build();
+    }
+
+    public boolean tryAcquire(String key) {
+        return buckets.get(key, k -> new Bucket()).tryAcquire(nanoTime.getAsLong(), intervalNanos, burstNanos);
+    }
+
+    //délai avant le prochain jeton pour cette clé (zéro si un jeton est disponible)
+    public Duration retryAfter(String key) {
+        Bucket bucket = buckets.getIfPresent(key);
+        if (bucket == null) {
+            return Duration.ZERO;
+        }
+        long wait = bucket.get() + intervalNanos - burstNanos - nanoTime.getAsLong();
+        return Duration.ofNanos(Math.max(0, wait));
+    }
+
+    public long size() {
+        return buckets.estimatedSize();
+    }
+
+    private static final class Bucket extends AtomicLong {
+
+        private Bucket() {
+            super(Long.MIN_VALUE);
+        }
+
+        private boolean tryAcquire(long now, long intervalNanos, long burstNanos) {
+            while (true) {
+                long arrival = get();
+                long next = Math.max(arrival, now) + intervalNanos;
+                if (next - now > burstNanos) {
+                    return false;
+                }
+                if (compareAndSet(arrival, next)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.ecom.security.security;
+
+import com.ecom.security.entity.UserTokenEpoch;
+import com.ecom.security.repository.UserTokenEpochRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+
+//Révocation des tokens par époque : une connexion incrémente l'époque de l'utilisateur,
+//les décodeurs refusent les tokens qui portent une époque plus ancienne
+@Slf4j
+@Service
+public class TokenEpochService {
+
+    //chevauchement entre deux rafraîchissements pour ne rien rater des écritures concurrentes
+    private static final Duration REFRESH_OVERLAP = Duration.ofSeconds(5);
+
+    private final UserTokenEpochRepository repository;
+    private final TokenEpochTable epochs = new TokenEpochTable(1024);
+    //au démarrage on ne charge que les époques encore utiles (tokens non expirés)
+    @Value("${security.token-epoch.lookback:PT1H}")
+    private Duration lookback;
+    private volatile Instant lastRefresh;
+
+    public TokenEpochService(UserTokenEpochRepository repository) {
+        this.repository = repository;
+    }
+
+    @PostConstruct
+    void load() {
+        refreshSince(Instant.now().minus(lookback));
+    }
+
+    //upsert puis relecture dans la même transaction : la ligne reste verrouillée, la valeur lue est celle qu'on a écrite
+    @Transactional
+    public long bump(Long userId) {
+        repository.increment(userId, Instant.now());
+        long epoch = repository.findEpoch(userId);
+        epochs.putMax(userId, epoch);
+        return epoch;
+    }
+
+    public long current(Long userId) {
+        return userId == null ? 0L : epochs.get(userId);
+    }
+
+    //contrôle d'un jeton longue durée (refresh token) : il peut porter une époque antérieure à la fenêtre chargée
+    //au démarrage (lookback) ; dans ce cas seulement, l'époque est relue en base
+    public boolean isCurrent(Long userId, long epoch) {
+        long known = current(userId);
+        if (known < epoch) {
+            known = repository.findById(userId).map(UserTokenEpoch::getEpoch).orElse(0L);
+            epochs.putMax(userId, known);
+        }
+        return known == epoch;
+    }
+
+    public TokenEpochValidator validator() {
+        return new TokenEpochValidator(epochs::get);
+    }
+
+    //récupère les révocations faites par les autres instances
+    @Scheduled(fixedDelayString = "${security.token-epoch.refresh-interval:PT15S}")
+    public void refresh() {
+        refreshSince(lastRefresh.minus(REFRESH_OVERLAP));
+    }
+
+    private void refreshSince(Instant since) {
+        Instant startedAt = Instant.now();
+        repository.findByUpdatedAtAfter(since)
+                .forEach(epoch -> epochs.putMax(epoch.getUserId(), epoch.getEpoch()));
+        lastRefresh = startedAt;
+    }
+}
@@ -0,0 +1,125 @@
+package com.ecom.security.security;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+//Table userId -> époque à adressage ouvert, en long primitifs (pas de boxing sur le chemin de chaque requête)
+//lectures optimistes sans verrou, écritures sous verrou exclusif
+public final class TokenEpochTable {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final StampedLock lock = new StampedLock();
+    private long[] keys;
+    private long[] values;
+    private int size;
+
+    public TokenEpochTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2) - 1) << 1;
+        this.keys = emptyKeys(capacity);
+        this.values = new long[capacity];
+    }
+
+    //époque connue pour l'utilisateur, 0 si aucune révocation
+    public long get(long userId) {
+        long stamp = lock.tryOptimisticRead();
+        long epoch = find(userId);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                epoch = find(userId);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return epoch;
+    }
+
+    //l'époque ne fait que croître : une valeur plus ancienne (refresh en retard) est ignorée
+    public void putMax(long userId, long epoch) {
+        if (userId == EMPTY) {
+            throw new IllegalArgumentException("userId invalide");
+        }
+        long stamp = lock.writeLock();
+        try {
+            int mask = keys.length - 1;
+            int index = mix(userId) & mask;
+            while (keys[index] != EMPTY && keys[index] != userId) {
+                index = (index + 1) & mask;
+            }
+            if (keys[index] == userId) {
+                values[index] = Math.max(values[index], epoch);
+                return;
+            }
+            keys[index] = userId;
+            values[index] = epoch;
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private long find(long userId) {
+        long[] k = keys;
+        long[] v = values;
+        //lecture optimiste pendant un resize : tableaux incohérents, la validation échouera
+        if (k.length != v.length) {
+            return 0;
+        }
+        int mask = k.length - 1;
+        int index = mix(userId) & mask;
+        for (int probe = 0; probe <= mask; probe++) {
+            long current = k[index];
+            if (current == userId) {
+                return v[index];
+            }
+            if (current == EMPTY) {
+                return 0;
+            }
+            index = (index + 1) & mask;
+        }
+        return 0;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        long[] newKeys = emptyKeys(oldKeys.length * 2);
+        long[] newValues = new long[oldKeys.length * 2];
+        int mask = newKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int index = mix(oldKeys[i]) & mask;
+                while (newKeys[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                newKeys[index] = oldKeys[i];
+                newValues[index] = oldValues[i];
+            }
+        }
+        keys = newKeys;
+        values = newValues;
+    }
+
+    private static long[] emptyKeys(int capacity) {
+        long[] k = new long[capacity];
+        Arrays.fill(k, EMPTY);
+        return k;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
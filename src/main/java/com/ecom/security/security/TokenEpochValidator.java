@@ -0,0 +1,37 @@
+package com.ecom.security.security;
+
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.function.LongUnaryOperator;
+
+//Rejette les tokens utilisateur dont l'époque est antérieure à la dernière connexion
+public class TokenEpochValidator implements OAuth2TokenValidator<Jwt> {
+
+    public static final String EPOCH_CLAIM = "epoch";
+    private static final OAuth2Error REVOKED = new OAuth2Error(OAuth2ErrorCodes.INVALID_TOKEN, "Token révoqué", null);
+
+    private final LongUnaryOperator currentEpoch;
+
+    public TokenEpochValidator(LongUnaryOperator currentEpoch) {
+        this.currentEpoch = currentEpoch;
+    }
+
+    @Override
+    public OAuth2TokenValidatorResult validate(Jwt jwt) {
+        Object userId = jwt.getClaims().get("id");
+        if (!(userId instanceof Number id)) {
+            return OAuth2TokenValidatorResult.success();
+        }
+        //les tokens émis avant l'époque n'ont pas de claim : époque 0
+        Object claim = jwt.getClaims().get(EPOCH_CLAIM);
+        long tokenEpoch = claim instanceof Number epoch ? epoch.longValue() : 0L;
+        if (tokenEpoch < currentEpoch.applyAsLong(id.longValue())) {
+            return OAuth2TokenValidatorResult.failure(REVOKED);
+        }
+        return OAuth2TokenValidatorResult.success();
+    }
+}
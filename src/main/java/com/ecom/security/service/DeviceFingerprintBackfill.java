@@ -0,0 +1,126 @@
+package com.ecom.security.service;
+
+import com.ecom.security.entity.DevicesId;
+import com.ecom.security.repository.DevicesIdRepository;
+import com.ecom.security.repository.JobLockRepository;
+import com.ecom.security.security.Digests;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+//Rattrapage au démarrage : calcule l'empreinte des appareils enregistrés avant la colonne device_hash
+//une seule instance à la fois (verrou job_lock) ; les doublons (device, utilisateur) sont fusionnés : on garde l'appareil actif, sinon le plus ancien
+//une erreur est journalisée sans jamais bloquer le démarrage
+@Slf4j
+@Component
+public class DeviceFingerprintBackfill implements ApplicationRunner {
+
+    static final String LOCK = "device-fingerprint-backfill";
+
+    private final DevicesIdRepository devicesRepository;
+    private final JobLockRepository jobLockRepository;
+    private final TransactionOperations transactionOperations;
+    private final Duration lease;
+    private final String owner = UUID.randomUUID().toString();
+
+    public DeviceFingerprintBackfill(DevicesIdRepository devicesRepository, JobLockRepository jobLockRepository,
+                                     TransactionOperations transactionOperations,
+                                     @Value("${security.devices.backfill.lock-lease:PT10M}") Duration lease) {
+        this.devicesRepository = devicesRepository;
+        this.jobLockRepository = jobLockRepository;
+        this.transactionOperations = transactionOperations;
+        this.lease = lease;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            if (!tryLock()) {
+                log.debug("Rattrapage des empreintes d'appareils en cours sur une autre instance");
+                return;
+            }
+            try {
+                backfill();
+            } finally {
+                jobLockRepository.release(LOCK, owner, Instant.now());
+            }
+        } catch (RuntimeException e) {
+            log.error("Rattrapage des empreintes d'appareils interrompu, repris au prochain démarrage", e);
+        }
+    }
+
+    private void backfill() {
+        int hashed = 0;
+        int merged = 0;
+        int failed = 0;
+        long lastId = 0L;
+        List<DevicesId> batch = devicesRepository.findTop500ByDeviceHashIsNullAndDeviceIdIsNotNullAndIdGreaterThanOrderByIdAsc(lastId);
+        while (!batch.isEmpty()) {
+            for (DevicesId device : batch) {
+                lastId = device.getId();
+                try {
+                    if (Boolean.TRUE.equals(transactionOperations.execute(status -> hash(device)))) {
+                        hashed++;
+                    } else {
+                        merged++;
+                    }
+                } catch (DataIntegrityViolationException e) {
+                    //doublon inséré entre-temps par une connexion : la ligne reste à rattraper au prochain démarrage
+                    failed++;
+                    log.warn("Empreinte de l'appareil {} non enregistrée : {}", device.getId(), e.getMostSpecificCause().getMessage());
+                }
+            }
+            batch = devicesRepository.findTop500ByDeviceHashIsNullAndDeviceIdIsNotNullAndIdGreaterThanOrderByIdAsc(lastId);
+        }
+        if (hashed + merged + failed > 0) {
+            log.info("Empreintes d'appareils : {} calculées, {} doublons fusionnés, {} en échec", hashed, merged, failed);
+        }
+    }
+
+    //true si l'empreinte a été enregistrée sur cette ligne, false si la ligne était un doublon supprimé
+    private boolean hash(DevicesId device) {
+        String deviceHash = Digests.sha256Hex(device.getDeviceId());
+        Optional<DevicesId> existing = devicesRepository.findByDeviceHashAndUserId(deviceHash, device.getUserId());
+        if (existing.isPresent()) {
+            //la ligne déjà rattrapée est plus ancienne (ordre des id) : elle ne cède la place qu'à un appareil validé
+            if (!Boolean.TRUE.equals(device.getActive()) || Boolean.TRUE.equals(existing.get().getActive())) {
+                devicesRepository.delete(device);
+                return false;
+            }
+            devicesRepository.delete(existing.get());
+            devicesRepository.flush();
+        }
+        device.setDeviceHash(deviceHash);
+        //le fingerprint brut n'est plus nécessaire une fois l'empreinte calculée
+        device.setDeviceId(null);
+        devicesRepository.saveAndFlush(device);
+        return true;
+    }
+
+    //verrou à bail : une instance arrêtée en plein rattrapage ne bloque les autres que jusqu'à la fin du bail
+    private boolean tryLock() {
+        Instant now = Instant.now();
+        if (jobLockRepository.acquire(LOCK, owner, now, now.plus(lease)) == 1) {
+            return true;
+        }
+        if (jobLockRepository.existsById(LOCK)) {
+            return false;
+        }
+        try {
+            return jobLockRepository.create(LOCK, owner, now.plus(lease)) == 1;
+        } catch (DataIntegrityViolationException e) {
+            //ligne créée au même moment par une autre instance, qui détient le verrou
+            return false;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.ecom.security.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+//Regroupe les appels identiques simultanés : le premier appelant exécute l'appel distant,
+//les suivants attendent et partagent son résultat (ou son exception). Rien n'est gardé une fois l'appel terminé.
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter executed;
+    private final Counter shared;
+
+    public SingleFlight(MeterRegistry meterRegistry, String name) {
+        this.executed = Counter.builder("security.single-flight.calls")
+                .description("Appels distants regroupés ou non par SingleFlight")
+                .tag("name", name)
+                .tag("result", "executed")
+                .register(meterRegistry);
+        this.shared = Counter.builder("security.single-flight.calls")
+                .description("Appels distants regroupés ou non par SingleFlight")
+                .tag("name", name)
+                .tag("result", "shared")
+                .register(meterRegistry);
+    }
+
+    public V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            shared.increment();
+            return await(running);
+        }
+        executed.increment();
+        try {
+            V value = call.get();
+            mine.complete(value);
+            return value;
+        } catch (Throwable e) {
+            //toute exception, y compris une exception vérifiée levée sans être déclarée : les appelants en attente ne restent pas bloqués
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            if (!mine.isDone()) {
+                mine.completeExceptionally(new IllegalStateException("Appel " + key + " terminé sans résultat"));
+            }
+            //retiré dès la fin de l'appel : le suivant repart vers le service distant
+            inFlight.remove(key, mine);
+        }
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    private static <V> V await(CompletableFuture<V> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            //on relance l'exception d'origine pour que les appelants regroupés la voient comme le premier
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
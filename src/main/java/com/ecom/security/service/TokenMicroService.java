@@ -1,5 +1,10 @@
 package com.ecom.security.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.oauth2.jwt.JwtClaimsSet;
@@ -9,30 +14,119 @@ import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
+@Slf4j
 @Service
 public class TokenMicroService {
 
     @Value("${security.service.url}")
     private String securityServiceUrl;
+    //durée de vie du token technique
+    @Value("${security.tech-token.ttl:PT1H}")
+    private Duration tokenTtl;
+    //marge avant expiration à partir de laquelle on renouvelle en arrière-plan
+    @Value("${security.tech-token.refresh-before:PT5M}")
+    private Duration refreshBefore;
+
     private final JwtEncoder jwtEncoder;
+    private final AtomicReference<CachedToken> current = new AtomicReference<>();
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tech-token-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Counter hits;
+    private final Counter refreshes;
 
-    public TokenMicroService(@Qualifier("techJwtEncoder") JwtEncoder jwtEncoder) {
+    public TokenMicroService(@Qualifier("techJwtEncoder") JwtEncoder jwtEncoder, MeterRegistry meterRegistry) {
         this.jwtEncoder = jwtEncoder;
+        this.hits = Counter.builder("security.tech-token.hits")
+                .description("Appels servis par le token technique en cache")
+                .register(meterRegistry);
+        this.refreshes = Counter.builder("security.tech-token.refreshes")
+                .description("Signatures d'un nouveau token technique")
+                .register(meterRegistry);
+    }
+
+    //on signe le premier token au démarrage pour que le premier /signin ne paie pas la signature RSA
+    @PostConstruct
+    void warmUp() {
+        refresh();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refreshExecutor.shutdownNow();
     }
 
     public String tokenService(){
+        CachedToken token = current.get();
+        Instant now = Instant.now();
+        if (token != null && now.isBefore(token.expiresAt())) {
+            hits.increment();
+            //proche de l'expiration : on renouvelle en arrière-plan et on sert l'ancien token
+            if (!now.isBefore(token.refreshAt())) {
+                scheduleRefresh();
+            }
+            return token.value();
+        }
+        //aucun token valide (refresh en échec prolongé) : on signe sur le thread appelant
+        return refresh().value();
+    }
+
+    public long getHitCount() {
+        return (long) hits.count();
+    }
+
+    public long getRefreshCount() {
+        return (long) refreshes.count();
+    }
+
+    private void scheduleRefresh() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    refresh();
+                } catch (RuntimeException e) {
+                    log.warn("Renouvellement du token technique impossible, nouvel essai au prochain appel", e);
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.set(false);
+            log.warn("Renouvellement du token technique non planifié", e);
+        }
+    }
+
+    private CachedToken refresh() {
         Instant now = Instant.now();
+        Instant expiresAt = now.plus(tokenTtl);
         // Construction du JWT Claims
         JwtClaimsSet claims = JwtClaimsSet.builder()
                 .issuer(securityServiceUrl)
                 .issuedAt(now)
-                .expiresAt(now.plus(Duration.ofHours(1)))
+                .expiresAt(expiresAt)
                 .subject("security-service")
                 .claim("scope", "users:read users:write")
                 .build();
 
-        return jwtEncoder.encode(JwtEncoderParameters.from(claims))
+        String value = jwtEncoder.encode(JwtEncoderParameters.from(claims))
                 .getTokenValue();
+        CachedToken token = new CachedToken(value, expiresAt.minus(refreshBefore), expiresAt);
+        current.set(token);
+        refreshes.increment();
+        return token;
+    }
+
+    private record CachedToken(String value, Instant refreshAt, Instant expiresAt) {
     }
 }
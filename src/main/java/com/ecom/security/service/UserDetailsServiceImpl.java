@@ -1,9 +1,9 @@
 package com.ecom.security.service;
 
 
-import com.ecom.security.clients.UserRestClient;
 import com.ecom.security.model.User;
 import com.ecom.security.response.UserNotFoundException;
+import com.ecom.security.security.SigninMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -16,18 +16,16 @@ public class UserDetailsServiceImpl implements UserDetailsService {
 
 
     @Autowired
-    private UserRestClient userRepository;
+    private UserLookupService userLookupService;
+
     @Autowired
-    private TokenMicroService tokenMicroService;
+    private SigninMetrics signinMetrics;
 
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        String token = this.tokenMicroService.tokenService();
-        String bearer = "Bearer " + token;
-
-        User user = userRepository.findByEmailLogin(bearer,email);
-        if (user.getName().contains("non trouvé")) {
+        User user = signinMetrics.time(SigninMetrics.USERS_FETCH, () -> userLookupService.findByEmailLogin(email));
+        if (!UserLookupService.isFound(user)) {
             throw new UserNotFoundException("Email ou mot de passe invalide load");
         }
         return new UserDetailsImpl(user);
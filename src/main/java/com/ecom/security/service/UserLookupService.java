@@ -0,0 +1,147 @@
+package com.ecom.security.service;
+
+import com.ecom.security.clients.UserRestClient;
+import com.ecom.security.model.User;
+import com.ecom.security.response.ServiceUnavailableException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+//Accès aux utilisateurs de users-service pour le login, avec un cache à durée de vie limitée
+//les lectures identiques simultanées (double clic, relances de l'appli mobile) partagent un seul appel Feign
+//si users-service est en panne, la dernière version connue est servie pendant security.users.stale.max-age
+@Slf4j
+@Service
+public class UserLookupService {
+
+    private final UserRestClient userRestClient;
+    private final TokenMicroService tokenMicroService;
+    private final Cache<String, User> loginCache;
+    private final SingleFlight<String, User> loginLookups;
+    private final SingleFlight<Long, User> idLookups;
+    //dernières réponses valides, gardées plus longtemps que le cache de login et lues uniquement en cas de panne
+    private final Cache<String, User> staleLogins;
+    private final Cache<Long, User> staleById;
+    private final StaleCounters loginStale;
+    private final StaleCounters byIdStale;
+
+    public UserLookupService(UserRestClient userRestClient, TokenMicroService tokenMicroService, MeterRegistry meterRegistry,
+                             @Value("${security.users.cache.ttl:PT5M}") Duration ttl,
+                             @Value("${security.users.cache.maximum-size:10000}") long maximumSize,
+                             @Value("${security.users.stale.max-age:PT1H}") Duration staleMaxAge,
+                             @Value("${security.users.stale.maximum-size:10000}") long staleMaximumSize) {
+        this.userRestClient = userRestClient;
+        this.tokenMicroService = tokenMicroService;
+        this.loginCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, loginCache, "usersLogin");
+        this.loginLookups = new SingleFlight<>(meterRegistry, "usersLogin");
+        this.idLookups = new SingleFlight<>(meterRegistry, "usersById");
+        this.staleLogins = Caffeine.newBuilder()
+                .maximumSize(staleMaximumSize)
+                .expireAfterWrite(staleMaxAge)
+                .build();
+        this.staleById = Caffeine.newBuilder()
+                .maximumSize(staleMaximumSize)
+                .expireAfterWrite(staleMaxAge)
+                .build();
+        this.loginStale = new StaleCounters(meterRegistry, "usersLogin");
+        this.byIdStale = new StaleCounters(meterRegistry, "usersById");
+    }
+
+    public User findByEmailLogin(String email) {
+        String key = cacheKey(email);
+        User cached = loginCache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        return loginLookups.execute(key, () -> {
+            User user = staleIfError(staleLogins, key, loginStale,
+                    () -> userRestClient.findByEmailLogin("Bearer " + tokenMicroService.tokenService(), email));
+            //on ne garde jamais l'utilisateur "non trouvée" renvoyé par le fallback
+            if (isFound(user)) {
+                loginCache.put(key, user);
+            }
+            return user;
+        });
+    }
+
+    //proxy /users/{id} : pas de cache, seulement le regroupement des appels simultanés et le secours en cas de panne
+    public User findUserById(Long id) {
+        return idLookups.execute(id, () -> staleIfError(staleById, id, byIdStale, () -> userRestClient.findUserById(id)));
+    }
+
+    //appelé par users-service quand le mot de passe, les rôles ou l'activation changent
+    public void evict(String email) {
+        String key = cacheKey(email);
+        loginCache.invalidate(key);
+        staleLogins.invalidate(key);
+        //la copie de secours par id n'est pas indexée par email : parcours, les invalidations sont rares
+        staleById.asMap().values().removeIf(user -> user.getEmail() != null && key.equals(cacheKey(user.getEmail())));
+        log.debug("Utilisateur {} retiré du cache de login", email);
+    }
+
+    public void evictAll() {
+        loginCache.invalidateAll();
+        staleLogins.invalidateAll();
+        staleById.invalidateAll();
+    }
+
+    public static boolean isFound(User user) {
+        return user != null && (user.getName() == null || !user.getName().contains("non trouvé"));
+    }
+
+    private static <K> User staleIfError(Cache<K, User> store, K key, StaleCounters counters, Supplier<User> call) {
+        try {
+            User user = call.get();
+            if (isFound(user)) {
+                store.put(key, user);
+            }
+            return user;
+        } catch (ServiceUnavailableException e) {
+            User stale = store.getIfPresent(key);
+            if (stale == null) {
+                counters.missing.increment();
+                throw e;
+            }
+            counters.served.increment();
+            log.warn("users-service indisponible, utilisateur {} servi depuis le cache de secours", key);
+            return stale;
+        }
+    }
+
+    private static String cacheKey(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    //security.users.stale{lookup, result=served|missing} : pannes servies (ou non) depuis la dernière version connue
+    private static final class StaleCounters {
+        private final Counter served;
+        private final Counter missing;
+
+        private StaleCounters(MeterRegistry meterRegistry, String lookup) {
+            this.served = counter(meterRegistry, lookup, "served");
+            this.missing = counter(meterRegistry, lookup, "missing");
+        }
+
+        private static Counter counter(MeterRegistry meterRegistry, String lookup, String result) {
+            return Counter.builder("security.users.stale")
+                    .description("Pannes de users-service servies depuis la dernière version connue")
+                    .tag("lookup", lookup)
+                    .tag("result", result)
+                    .register(meterRegistry);
+        }
+    }
+}
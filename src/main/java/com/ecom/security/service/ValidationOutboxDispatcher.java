@@ -0,0 +1,146 @@
+package com.ecom.security.service;
+
+import com.ecom.security.clients.ValidationRestClient;
+import com.ecom.security.dto.ValidationDto;
+import com.ecom.security.entity.ValidationOutbox;
+import com.ecom.security.model.Validation;
+import com.ecom.security.repository.ValidationOutboxRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+//Vide l'outbox des demandes de validation par lots, avec nouvelles tentatives espacées (backoff exponentiel)
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "security.validation.outbox.enabled", havingValue = "true")
+public class ValidationOutboxDispatcher {
+
+    private final ValidationOutboxRepository outboxRepository;
+    private final ValidationRestClient validationRestClient;
+    private final TokenMicroService tokenMicroService;
+    private final TransactionOperations transactionOperations;
+    private final MeterRegistry meterRegistry;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final Duration maxBackoff;
+    private final Duration lease;
+
+    public ValidationOutboxDispatcher(ValidationOutboxRepository outboxRepository, ValidationRestClient validationRestClient,
+                                      TokenMicroService tokenMicroService, TransactionOperations transactionOperations,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${security.validation.outbox.batch-size:50}") int batchSize,
+                                      @Value("${security.validation.outbox.max-attempts:10}") int maxAttempts,
+                                      @Value("${security.validation.outbox.backoff:PT2S}") Duration backoff,
+                                      @Value("${security.validation.outbox.max-backoff:PT5M}") Duration maxBackoff,
+                                      @Value("${security.validation.outbox.lease:PT30S}") Duration lease) {
+        this.outboxRepository = outboxRepository;
+        this.validationRestClient = validationRestClient;
+        this.tokenMicroService = tokenMicroService;
+        this.transactionOperations = transactionOperations;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.backoff = backoff;
+        this.maxBackoff = maxBackoff;
+        this.lease = lease;
+    }
+
+    @Scheduled(fixedDelayString = "${security.validation.outbox.poll-interval:PT1S}")
+    public void dispatch() {
+        List<ValidationOutbox> batch;
+        do {
+            batch = claim();
+            batch.forEach(this::send);
+        } while (batch.size() == batchSize);
+    }
+
+    @Scheduled(cron = "${security.validation.outbox.cleanup-cron:@daily}")
+    public void removeSent() {
+        transactionOperations.executeWithoutResult(status ->
+                outboxRepository.deleteSentBefore(ValidationOutbox.Status.SENT, Instant.now().minus(Duration.ofDays(7))));
+    }
+
+    //transaction courte : on réserve le lot (bail) puis l'appel distant se fait hors transaction
+    private List<ValidationOutbox> claim() {
+        UUID claimToken = UUID.randomUUID();
+        return transactionOperations.execute(status -> {
+            Instant now = Instant.now();
+            List<ValidationOutbox> due = outboxRepository.lockDue(ValidationOutbox.Status.PENDING, now, PageRequest.of(0, batchSize));
+            due.forEach(outbox -> {
+                outbox.setNextAttemptAt(now.plus(lease));
+                outbox.setClaimToken(claimToken);
+            });
+            return due;
+        });
+    }
+
+    //le bail du lot peut expirer pendant les envois précédents : il est renouvelé pour chaque demande,
+    //et la demande reprise par une autre instance n'est pas envoyée une seconde fois
+    private boolean renewLease(ValidationOutbox outbox) {
+        Integer renewed = transactionOperations.execute(status -> outboxRepository.renewLease(outbox.getId(), outbox.getClaimToken(),
+                ValidationOutbox.Status.PENDING, Instant.now().plus(lease)));
+        return renewed != null && renewed > 0;
+    }
+
+    private void send(ValidationOutbox outbox) {
+        if (!renewLease(outbox)) {
+            meterRegistry.counter("security.validation.outbox.dispatched", "result", "lease-lost").increment();
+            return;
+        }
+        String error;
+        try {
+            Validation validation = validationRestClient.sendValidation("Bearer " + tokenMicroService.tokenService(),
+                    outbox.getReference().toString(), toDto(outbox));
+            //le fallback du circuit breaker renvoie une validation sans id
+            error = validation != null && validation.getId() != null ? null : "validation-service indisponible";
+        } catch (RuntimeException e) {
+            error = e.getMessage();
+        }
+
+        Instant now = Instant.now();
+        String result;
+        if (error == null) {
+            outbox.setStatus(ValidationOutbox.Status.SENT);
+            outbox.setSentAt(now);
+            outbox.setLastError(null);
+            result = "sent";
+        } else {
+            outbox.setAttempts(outbox.getAttempts() + 1);
+            outbox.setLastError(error.length() > 500 ? error.substring(0, 500) : error);
+            if (outbox.getAttempts() >= maxAttempts) {
+                outbox.setStatus(ValidationOutbox.Status.FAILED);
+                log.warn("Demande de validation {} abandonnée après {} tentatives : {}", outbox.getReference(), outbox.getAttempts(), error);
+                result = "failed";
+            } else {
+                outbox.setNextAttemptAt(now.plus(backoff(outbox.getAttempts())));
+                result = "retry";
+            }
+        }
+        outboxRepository.save(outbox);
+        meterRegistry.counter("security.validation.outbox.dispatched", "result", result).increment();
+    }
+
+    //backoff exponentiel plafonné, avec un peu d'aléa pour ne pas relancer tout un lot en même temps
+    Duration backoff(int attempts) {
+        long base = backoff.toMillis() << Math.min(attempts - 1, 20);
+        long delay = Math.min(base, maxBackoff.toMillis());
+        return Duration.ofMillis(delay + ThreadLocalRandom.current().nextLong(backoff.toMillis() + 1));
+    }
+
+    private static ValidationDto toDto(ValidationOutbox outbox) {
+        return new ValidationDto(outbox.getUserId(), outbox.getUsername(), outbox.getDeviceId(),
+                outbox.getEmail(), outbox.getType(), outbox.getReference());
+    }
+}
@@ -0,0 +1,47 @@
+package com.ecom.security.clients;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GradientLimitTest {
+
+    // 1 : la latence dépasse la tolérance, la limite baisse sans passer sous le minimum
+    @Test
+    void testUpdate_LatencySpikeLowersLimit() {
+        GradientLimit limit = new GradientLimit(20, 2, 100, 2.0, 0.5, 5);
+        record(limit, 10, 20);
+        assertEquals(20, limit.update());
+
+        // validation-service ralentit : 200 ms au lieu de 20 ms
+        for (int i = 0; i < 20; i++) {
+            record(limit, 10, 200);
+            limit.update();
+        }
+
+        assertEquals(2, limit.limit());
+        // la référence n'a pas suivi la panne
+        assertEquals(20.0, limit.baselineMillis(), 0.01);
+    }
+
+    // 2 : latence saine et appels refusés, la limite remonte ; trop peu d'appels, elle ne bouge pas
+    @Test
+    void testUpdate_RejectionsWithHealthyLatencyRaiseLimit() {
+        GradientLimit limit = new GradientLimit(10, 2, 100, 2.0, 0.5, 5);
+        record(limit, 3, 20);
+        assertEquals(10, limit.update());
+
+        record(limit, 10, 20);
+        limit.rejected();
+
+        assertTrue(limit.update() > 10);
+    }
+
+    private static void record(GradientLimit limit, int calls, long latencyMillis) {
+        for (int i = 0; i < calls; i++) {
+            limit.record(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.ecom.security.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CachingJwtDecoderTest {
+
+    @Mock
+    private JwtDecoder delegate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    // 1 : le second décodage du même token ne repasse pas par la vérification de signature
+    @Test
+    void testDecode_HitSkipsDelegate() {
+        Jwt jwt = jwt("token-1", Instant.now().plus(30, ChronoUnit.MINUTES));
+        when(delegate.decode("token-1")).thenReturn(jwt);
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 100, meterRegistry, "userJwtDecoder");
+
+        assertSame(jwt, decoder.decode("token-1"));
+        assertSame(jwt, decoder.decode("token-1"));
+
+        // Vérification : un seul décodage complet + métriques de hit
+        verify(delegate, times(1)).decode("token-1");
+        assertEquals(1, decoder.size());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "userJwtDecoder").tag("result", "hit").functionCounter().count());
+    }
+
+    // 2 : un token déjà expiré n'est pas servi depuis le cache
+    @Test
+    void testDecode_ExpiredTokenNotCached() {
+        Jwt jwt = jwt("token-2", Instant.now().minusSeconds(5));
+        when(delegate.decode("token-2")).thenReturn(jwt);
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 100, meterRegistry, "userJwtDecoder");
+
+        decoder.decode("token-2");
+        decoder.decode("token-2");
+
+        verify(delegate, times(2)).decode("token-2");
+    }
+
+    // 3 : un hit qui ne passe plus les validateurs est rejeté puis retiré du cache
+    @Test
+    void testDecode_HitStillValidated() {
+        Jwt jwt = jwt("token-3", Instant.now().plus(30, ChronoUnit.MINUTES));
+        when(delegate.decode("token-3")).thenReturn(jwt);
+        AtomicBoolean revoked = new AtomicBoolean(false);
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate,
+                token -> revoked.get()
+                        ? OAuth2TokenValidatorResult.failure(new OAuth2Error("invalid_token", "token révoqué", null))
+                        : OAuth2TokenValidatorResult.success(),
+                100, meterRegistry, "userJwtDecoder");
+
+        decoder.decode("token-3");
+        revoked.set(true);
+
+        assertThrows(JwtValidationException.class, () -> decoder.decode("token-3"));
+        assertEquals(0, decoder.size());
+    }
+
+    private static Jwt jwt(String value, Instant expiresAt) {
+        return Jwt.withTokenValue(value)
+                .header("alg", "RS256")
+                .subject("user@domain.com")
+                .issuedAt(expiresAt.minus(30, ChronoUnit.MINUTES))
+                .expiresAt(expiresAt)
+                .build();
+    }
+}
@@ -0,0 +1,80 @@
+package com.ecom.security.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CaffeineAuthorizationServiceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RegisteredClient client;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        client = RegisteredClient.withId("client-1")
+                .clientId("orders")
+                .clientSecret("secret")
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+                .build();
+    }
+
+    // 1 : sans persistance des client_credentials, l'autorisation n'est jamais conservée
+    @Test
+    void testSave_SkipsClientCredentials() {
+        CaffeineAuthorizationService service = new CaffeineAuthorizationService(100, Duration.ofMinutes(10), false, meterRegistry);
+
+        service.save(authorization("auth-1", AuthorizationGrantType.CLIENT_CREDENTIALS, "access-1", null));
+
+        assertNull(service.findById("auth-1"));
+        assertNull(service.findByToken("access-1", OAuth2TokenType.ACCESS_TOKEN));
+        assertEquals(0, service.size());
+        assertEquals(1.0, meterRegistry.get("security.oauth2.authorization.skipped").counter().count());
+    }
+
+    // 2 : recherche par token typé, l'ancien refresh token n'est plus indexé après renouvellement ni après suppression
+    @Test
+    void testFindByToken_IndexFollowsSaveAndRemove() {
+        CaffeineAuthorizationService service = new CaffeineAuthorizationService(100, Duration.ofMinutes(10), false, meterRegistry);
+        service.save(authorization("auth-2", AuthorizationGrantType.REFRESH_TOKEN, "access-2", "refresh-2"));
+
+        assertNotNull(service.findByToken("refresh-2", OAuth2TokenType.REFRESH_TOKEN));
+        assertNull(service.findByToken("refresh-2", OAuth2TokenType.ACCESS_TOKEN));
+
+        OAuth2Authorization renewed = authorization("auth-2", AuthorizationGrantType.REFRESH_TOKEN, "access-3", "refresh-3");
+        service.save(renewed);
+
+        // Vérification : seules les nouvelles valeurs retrouvent l'autorisation
+        assertNull(service.findByToken("refresh-2", OAuth2TokenType.REFRESH_TOKEN));
+        assertSame(renewed, service.findByToken("access-3", null));
+
+        service.remove(renewed);
+        assertNull(service.findByToken("access-3", OAuth2TokenType.ACCESS_TOKEN));
+        assertEquals(0.0, meterRegistry.get("security.oauth2.authorization.index.size").gauge().value());
+    }
+
+    private OAuth2Authorization authorization(String id, AuthorizationGrantType grantType, String access, String refresh) {
+        Instant now = Instant.now();
+        OAuth2Authorization.Builder builder = OAuth2Authorization.withRegisteredClient(client)
+                .id(id)
+                .principalName("orders")
+                .authorizationGrantType(grantType)
+                .accessToken(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, access, now, now.plusSeconds(300)));
+        if (refresh != null) {
+            builder.refreshToken(new OAuth2RefreshToken(refresh, now, now.plusSeconds(3600)));
+        }
+        return builder.build();
+    }
+}
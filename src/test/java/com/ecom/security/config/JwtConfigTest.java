@@ -0,0 +1,160 @@
+package com.ecom.security.config;
+
+import com.ecom.security.repository.UserTokenEpochRepository;
+import com.ecom.security.security.TokenEpochService;
+import com.ecom.security.security.TokenEpochValidator;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.RSAKey;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.security.oauth2.jwt.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JwtConfigTest {
+
+    private RsakeysConfig rsakeysConfig;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Paire RSA jouant le rôle des fichiers PEM
+        RSAKey rsaKey = (RSAKey) SigningKeys.generate(JWSAlgorithm.RS256, "user-key");
+        rsakeysConfig = new RsakeysConfig(rsaKey.toRSAPublicKey(), rsaKey.toRSAPrivateKey());
+    }
+
+    // 1 : chaque algorithme signe puis vérifie ses propres tokens utilisateur
+    @Test
+    void testUserTokens_RoundTripPerAlgorithm() {
+        assertRoundTrip(new JwtConfig(rsakeysConfig, "RS256", null, true, "RS256"), "RS256");
+        assertRoundTrip(new JwtConfig(rsakeysConfig, "ES256", new ClassPathResource("certs/userKey-es256-dev.json"), true, "ES256"), "ES256");
+        assertRoundTrip(new JwtConfig(rsakeysConfig, "EdDSA", new ClassPathResource("certs/userKey-eddsa-dev.json"), true, "EdDSA"), "EdDSA");
+    }
+
+    // 2 : pendant la transition, les anciens tokens RS256 restent acceptés
+    @Test
+    void testUserTokens_LegacyRsaAcceptedDuringTransition() {
+        JwtConfig legacy = new JwtConfig(rsakeysConfig, "RS256", null, true, "RS256");
+        String legacyToken = legacy.userJwtEncoder().encode(JwtEncoderParameters.from(claims())).getTokenValue();
+
+        JwtConfig transition = new JwtConfig(rsakeysConfig, "ES256", new ClassPathResource("certs/userKey-es256-dev.json"), true, "RS256");
+        assertEquals("user@domain.com", transition.userJwtDecoder(new SimpleMeterRegistry(), 100, epochs()).decode(legacyToken).getSubject());
+
+        // Sans transition, le token RS256 est refusé
+        JwtConfig strict = new JwtConfig(rsakeysConfig, "ES256", new ClassPathResource("certs/userKey-es256-dev.json"), false, "RS256");
+        assertThrows(JwtException.class, () -> strict.userJwtDecoder(new SimpleMeterRegistry(), 100, epochs()).decode(legacyToken));
+    }
+
+    // 3 : token technique signé avec la clé active du trousseau et vérifié par son kid
+    @Test
+    void testTechTokens_RoundTrip() {
+        JwtConfig jwtConfig = new JwtConfig(rsakeysConfig, "RS256", null, true, "EdDSA");
+        TechKeyRing techKeyRing = jwtConfig.techKeyRing(null, new SimpleMeterRegistry(), "", Duration.ofDays(30),
+                Duration.ofMinutes(10), Duration.ofHours(2), Duration.ofSeconds(5));
+
+        String token = jwtConfig.techJwtEncoder(techKeyRing).encode(JwtEncoderParameters.from(claims())).getTokenValue();
+        Jwt jwt = jwtConfig.techJwtDecoder(techKeyRing, new SimpleMeterRegistry(), 100).decode(token);
+
+        assertEquals("EdDSA", jwt.getHeaders().get("alg"));
+        assertEquals(techKeyRing.signingKey().getKeyID(), jwt.getHeaders().get("kid"));
+    }
+
+    // 4 : une nouvelle connexion (époque suivante) révoque les tokens déjà émis, même s'ils sont en cache
+    @Test
+    void testUserTokens_RevokedByEpochBump() {
+        UserTokenEpochRepository repository = mock(UserTokenEpochRepository.class);
+        when(repository.findEpoch(7L)).thenReturn(1L);
+        TokenEpochService tokenEpochService = new TokenEpochService(repository);
+        JwtConfig jwtConfig = new JwtConfig(rsakeysConfig, "RS256", null, true, "RS256");
+        JwtDecoder decoder = jwtConfig.userJwtDecoder(new SimpleMeterRegistry(), 100, tokenEpochService);
+
+        String token = jwtConfig.userJwtEncoder().encode(JwtEncoderParameters.from(userClaims(0L))).getTokenValue();
+        assertEquals("user@domain.com", decoder.decode(token).getSubject());
+
+        tokenEpochService.bump(7L);
+
+        // L'ancien token est rejeté, celui de la nouvelle époque est accepté
+        assertThrows(JwtValidationException.class, () -> decoder.decode(token));
+        String fresh = jwtConfig.userJwtEncoder().encode(JwtEncoderParameters.from(userClaims(1L))).getTokenValue();
+        assertEquals("user@domain.com", decoder.decode(fresh).getSubject());
+    }
+
+    // 5 : kid dérivé de la clé dès le démarrage : après rotation, une instance redémarrée sur les nouveaux fichiers
+    // et une instance qui a rechargé la clé à chaud acceptent les tokens l'une de l'autre
+    @Test
+    void testUserTokens_BootKeyIdMatchesReloadedKeyId() throws Exception {
+        JwtConfig running = new JwtConfig(rsakeysConfig, "RS256", null, true, "RS256");
+        JwtDecoder runningDecoder = running.userJwtDecoder(new SimpleMeterRegistry(), 100, epochs());
+        String bootToken = running.userJwtEncoder().encode(JwtEncoderParameters.from(claims())).getTokenValue();
+        assertEquals(SigningKeys.rsaKey(rsakeysConfig.publicKey(), rsakeysConfig.privateKey(), "user-key").getKeyID(),
+                runningDecoder.decode(bootToken).getHeaders().get("kid"));
+
+        // Rotation à chaud (nouveaux fichiers PEM relus par UserKeyReloader)
+        RSAKey next = (RSAKey) SigningKeys.generate(JWSAlgorithm.RS256, "ignored");
+        running.userKeyRing().rotate(SigningKeys.rsaKey(next.toRSAPublicKey(), next.toRSAPrivateKey(), "user-key"), Duration.ofMinutes(35));
+        String rotatedToken = running.userJwtEncoder().encode(JwtEncoderParameters.from(claims())).getTokenValue();
+
+        // Instance démarrée sur les nouveaux fichiers
+        JwtConfig fresh = new JwtConfig(new RsakeysConfig(next.toRSAPublicKey(), next.toRSAPrivateKey()), "RS256", null, true, "RS256");
+        JwtDecoder freshDecoder = fresh.userJwtDecoder(new SimpleMeterRegistry(), 100, epochs());
+        String freshToken = fresh.userJwtEncoder().encode(JwtEncoderParameters.from(claims())).getTokenValue();
+
+        // Vérification : même kid des deux côtés, chaque token est accepté par l'autre instance
+        assertEquals(running.userKeyRing().signingKey().getKeyID(), fresh.userKeyRing().signingKey().getKeyID());
+        assertEquals("user@domain.com", freshDecoder.decode(rotatedToken).getSubject());
+        assertEquals("user@domain.com", runningDecoder.decode(freshToken).getSubject());
+        assertEquals("user@domain.com", runningDecoder.decode(bootToken).getSubject());
+    }
+
+    // 6 : tokens signés avec l'ancien kid fixe "user-key" avant la mise à jour : toujours acceptés
+    @Test
+    void testUserTokens_FixedKeyIdStillAccepted() throws Exception {
+        RSAKey fixedKid = new RSAKey.Builder(rsakeysConfig.publicKey()).privateKey(rsakeysConfig.privateKey())
+                .algorithm(JWSAlgorithm.RS256).keyID("user-key").build();
+        String previousToken = new UserKeyRing(fixedKid, JWSAlgorithm.RS256, List.of()).encoder()
+                .encode(JwtEncoderParameters.from(claims())).getTokenValue();
+
+        JwtConfig jwtConfig = new JwtConfig(rsakeysConfig, "RS256", null, true, "RS256");
+
+        assertEquals("user@domain.com", jwtConfig.userJwtDecoder(new SimpleMeterRegistry(), 100, epochs()).decode(previousToken).getSubject());
+    }
+
+    private static TokenEpochService epochs() {
+        return new TokenEpochService(mock(UserTokenEpochRepository.class));
+    }
+
+    private static JwtClaimsSet userClaims(long epoch) {
+        Instant now = Instant.now();
+        return JwtClaimsSet.builder()
+                .subject("user@domain.com")
+                .issuedAt(now)
+                .expiresAt(now.plus(30, ChronoUnit.MINUTES))
+                .claim("id", 7L)
+                .claim(TokenEpochValidator.EPOCH_CLAIM, epoch)
+                .build();
+    }
+
+    private static void assertRoundTrip(JwtConfig jwtConfig, String algorithm) {
+        String token = jwtConfig.userJwtEncoder().encode(JwtEncoderParameters.from(claims())).getTokenValue();
+        Jwt jwt = jwtConfig.userJwtDecoder(new SimpleMeterRegistry(), 100, epochs()).decode(token);
+        assertEquals(algorithm, jwt.getHeaders().get("alg"));
+        assertEquals("user@domain.com", jwt.getSubject());
+    }
+
+    private static JwtClaimsSet claims() {
+        Instant now = Instant.now();
+        return JwtClaimsSet.builder()
+                .subject("user@domain.com")
+                .issuedAt(now)
+                .expiresAt(now.plus(30, ChronoUnit.MINUTES))
+                .issuer("security-service")
+                .build();
+    }
+}
@@ -0,0 +1,97 @@
+package com.ecom.security.config;
+
+import com.ecom.security.entity.TechClient;
+import com.ecom.security.repository.TechClientRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.authentication.ClientSecretAuthenticationProvider;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class TechClientRegisteredClientRepositoryTest {
+
+    @Mock
+    private TechClientRepository techClientRepository;
+
+    private final RegisteredClient legacy = TechClientRegisteredClientRepository.techClient("security-service", "{bcrypt}hash", List.of("users:read"));
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    // 1 : un client ajouté puis désactivé dans la table est vu sans redémarrage
+    @Test
+    void testFindByClientId_FollowsTable() {
+        TechClientRegisteredClientRepository repository = repository(Duration.ZERO);
+        when(techClientRepository.findByClientIdAndEnabledTrue("orders-service")).thenReturn(Optional.empty());
+        assertNull(repository.findByClientId("orders-service"));
+
+        // Ajout en base
+        when(techClientRepository.findByClientIdAndEnabledTrue("orders-service"))
+                .thenReturn(Optional.of(new TechClient("orders-service", "{bcrypt}orders", "users:read users:write", true)));
+        RegisteredClient orders = repository.findByClientId("orders-service");
+        assertEquals(List.of("users:read", "users:write"), orders.getScopes().stream().sorted().toList());
+        assertEquals("orders-service", repository.findById(orders.getId()).getClientId());
+
+        // Désactivation en base
+        when(techClientRepository.findByClientIdAndEnabledTrue("orders-service")).thenReturn(Optional.empty());
+        assertNull(repository.findByClientId("orders-service"));
+    }
+
+    // 2 : les lectures de la table sont mises en cache, les clients configurés ne la consultent pas
+    @Test
+    void testFindByClientId_CachedAndConfiguredFirst() {
+        TechClientRegisteredClientRepository repository = repository(Duration.ofMinutes(1));
+        when(techClientRepository.findByClientIdAndEnabledTrue("unknown")).thenReturn(Optional.empty());
+
+        assertSame(legacy, repository.findByClientId("security-service"));
+        assertNull(repository.findByClientId("unknown"));
+        assertNull(repository.findByClientId("unknown"));
+
+        verify(techClientRepository, times(1)).findByClientIdAndEnabledTrue("unknown");
+        verify(techClientRepository, never()).findByClientIdAndEnabledTrue("security-service");
+    }
+
+    // 3 : secret de la table haché avec un coût BCrypt faible : le hash relevé est écrit en base, rien n'est gardé en mémoire
+    @Test
+    void testSave_UpgradedTableSecretWrittenBack() {
+        TechClientRegisteredClientRepository repository = repository(Duration.ofMinutes(1));
+        when(techClientRepository.findByClientIdAndEnabledTrue("orders-service"))
+                .thenReturn(Optional.of(new TechClient("orders-service", new BCryptPasswordEncoder(4).encode("orders-secret"), "users:read", true)));
+        ClientSecretAuthenticationProvider provider = new ClientSecretAuthenticationProvider(repository, mock(OAuth2AuthorizationService.class));
+        provider.setPasswordEncoder(new BCryptPasswordEncoder());
+
+        provider.authenticate(new OAuth2ClientAuthenticationToken("orders-service", ClientAuthenticationMethod.CLIENT_SECRET_BASIC, "orders-secret", null));
+
+        // Vérification : nouveau hash au coût par défaut enregistré dans la table
+        ArgumentCaptor<String> secretHash = ArgumentCaptor.forClass(String.class);
+        verify(techClientRepository).updateSecretHash(eq("orders-service"), secretHash.capture());
+        assertTrue(secretHash.getValue().startsWith("$2a$10$"));
+        assertTrue(new BCryptPasswordEncoder().matches("orders-secret", secretHash.getValue()));
+
+        // Client désactivé ensuite dans la table : la copie mise à niveau n'a pas survécu en mémoire
+        when(techClientRepository.findByClientIdAndEnabledTrue("orders-service")).thenReturn(Optional.empty());
+        assertNull(repository.findByClientId("orders-service"));
+        assertNull(repository.findById("tech_client:orders-service"));
+    }
+
+    private TechClientRegisteredClientRepository repository(Duration ttl) {
+        return new TechClientRegisteredClientRepository(List.of(legacy), techClientRepository, ttl, 100, new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,131 @@
+package com.ecom.security.config;
+
+import com.ecom.security.entity.TechSigningKey;
+import com.ecom.security.repository.TechSigningKeyRepository;
+import com.nimbusds.jose.JWSAlgorithm;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TechKeyRingTest {
+
+    @Mock
+    private TechSigningKeyRepository repository;
+
+    //table tech_signing_key partagée par les instances
+    private final Map<String, TechSigningKey> table = new ConcurrentHashMap<>();
+    private final MutableClock clock = new MutableClock(Instant.now());
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(repository.save(any())).thenAnswer(invocation -> {
+            TechSigningKey key = invocation.getArgument(0);
+            table.put(key.getKid(), key);
+            return key;
+        });
+        when(repository.findByExpiresAtAfter(any())).thenAnswer(invocation -> {
+            Instant now = invocation.getArgument(0);
+            return table.values().stream().filter(key -> key.getExpiresAt().isAfter(now)).toList();
+        });
+    }
+
+    // 1 : une seconde instance reprend la clé persistée et vérifie les tokens de la première
+    @Test
+    void testSharedRing_ReplicaVerifiesTokens() {
+        TechKeyRing first = ring("keyring-secret");
+        TechKeyRing second = ring("keyring-secret");
+
+        String token = first.encoder().encode(JwtEncoderParameters.from(claims())).getTokenValue();
+
+        // Vérification : une seule clé créée, déchiffrée par l'autre instance
+        assertEquals(1, table.size());
+        assertEquals(first.signingKey().getKeyID(), second.signingKey().getKeyID());
+        assertEquals("orders", decoder(second).decode(token).getSubject());
+        //secret différent : clé illisible
+        assertThrows(IllegalStateException.class, () -> ring("other-secret"));
+    }
+
+    // 2 : rotation : la clé suivante est publiée avant de signer, l'ancienne reste vérifiable
+    @Test
+    void testRotation_PublishesAheadAndKeepsOldKey() {
+        TechKeyRing ring = ring("keyring-secret");
+        String oldKid = ring.signingKey().getKeyID();
+        String oldToken = ring.encoder().encode(JwtEncoderParameters.from(claims())).getTokenValue();
+
+        // Fin de période moins publish-ahead : nouvelle clé publiée, l'ancienne signe encore
+        clock.advance(Duration.ofDays(30).minusMinutes(10));
+        ring.refresh();
+        assertEquals(2, table.size());
+        assertEquals(oldKid, ring.signingKey().getKeyID());
+
+        // publish-ahead écoulé : la nouvelle clé signe, l'ancien token passe toujours
+        clock.advance(Duration.ofMinutes(10));
+        ring.refresh();
+        assertNotEquals(oldKid, ring.signingKey().getKeyID());
+        assertEquals("orders", decoder(ring).decode(oldToken).getSubject());
+    }
+
+    private TechKeyRing ring(String secret) {
+        return new TechKeyRing(JWSAlgorithm.ES256, repository, secret, Duration.ofDays(30), Duration.ofMinutes(10),
+                Duration.ofHours(2), Duration.ofSeconds(5), new SimpleMeterRegistry(), clock);
+    }
+
+    private JwtDecoder decoder(TechKeyRing ring) {
+        return SigningKeys.decoder(ring.jwkSource(), SigningKeys.SUPPORTED);
+    }
+
+    //expiration vérifiée sur l'heure réelle par le décodeur, indépendamment de l'horloge du trousseau
+    private JwtClaimsSet claims() {
+        return JwtClaimsSet.builder()
+                .subject("orders")
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plus(Duration.ofHours(1)))
+                .build();
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        private void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.ecom.security.config;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWK;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserKeyRingTest {
+
+    private final AtomicReference<Instant> now = new AtomicReference<>(Instant.now());
+    private UserKeyRing userKeyRing;
+    private JwtDecoder decoder;
+
+    @BeforeEach
+    void setUp() {
+        Clock clock = mock(Clock.class);
+        when(clock.instant()).thenAnswer(invocation -> now.get());
+        userKeyRing = new UserKeyRing(SigningKeys.generate(JWSAlgorithm.ES256, "user-1"), JWSAlgorithm.ES256, List.of(), clock);
+        decoder = SigningKeys.decoder(userKeyRing.jwkSource(), Set.of(JWSAlgorithm.ES256));
+    }
+
+    // 1 : la nouvelle clé signe aussitôt, les tokens de l'ancienne restent acceptés
+    @Test
+    void testRotate_SwapsSigningKeyAndKeepsPrevious() {
+        String oldToken = sign();
+        JWK next = SigningKeys.generate(JWSAlgorithm.ES256, "user-2");
+
+        assertTrue(userKeyRing.rotate(next, Duration.ofMinutes(35)));
+        String newToken = sign();
+
+        // Vérification : nouveau kid, les deux tokens passent, relire la même clé ne change rien
+        assertEquals("user-2", decoder.decode(newToken).getHeaders().get("kid"));
+        assertEquals("user@domain.com", decoder.decode(oldToken).getSubject());
+        assertFalse(userKeyRing.rotate(next, Duration.ofMinutes(35)));
+    }
+
+    // 2 : passé le délai de rétention, l'ancienne clé n'est plus acceptée ; un kid réutilisé est refusé
+    @Test
+    void testRotate_PreviousKeyDroppedAfterRetention() {
+        String oldToken = sign();
+        userKeyRing.rotate(SigningKeys.generate(JWSAlgorithm.ES256, "user-2"), Duration.ofMinutes(35));
+
+        now.set(now.get().plus(Duration.ofMinutes(36)));
+
+        assertThrows(JwtException.class, () -> decoder.decode(oldToken));
+        assertThrows(IllegalStateException.class,
+                () -> userKeyRing.rotate(SigningKeys.generate(JWSAlgorithm.ES256, "user-2"), Duration.ofMinutes(35)));
+    }
+
+    // 3 : publish-ahead : la clé suivante est acceptée tout de suite mais ne signe qu'à son activation
+    @Test
+    void testRotate_PublishesAheadBeforeSigning() {
+        String oldToken = sign();
+        JWK next = SigningKeys.generate(JWSAlgorithm.ES256, "user-2");
+        //token signé par une autre instance déjà passée à la nouvelle clé
+        UserKeyRing otherReplica = new UserKeyRing(next, JWSAlgorithm.ES256, List.of());
+        String replicaToken = otherReplica.encoder().encode(JwtEncoderParameters.from(claims())).getTokenValue();
+
+        assertTrue(userKeyRing.rotate(next, Duration.ofMinutes(2), Duration.ofMinutes(35)));
+        assertFalse(userKeyRing.rotate(next, Duration.ofMinutes(2), Duration.ofMinutes(35)));
+
+        // Vérification : l'ancienne clé signe encore, les deux sont acceptées
+        assertEquals("user-1", decoder.decode(sign()).getHeaders().get("kid"));
+        assertEquals("user-2", userKeyRing.pendingKey().getKeyID());
+        assertEquals("user@domain.com", decoder.decode(replicaToken).getSubject());
+
+        // publish-ahead écoulé : la nouvelle clé signe, l'ancienne reste vérifiable
+        now.set(now.get().plus(Duration.ofMinutes(2)));
+        assertEquals("user-2", decoder.decode(sign()).getHeaders().get("kid"));
+        assertNull(userKeyRing.pendingKey());
+        assertEquals("user@domain.com", decoder.decode(oldToken).getSubject());
+    }
+
+    //expiration vérifiée sur l'heure réelle par le décodeur
+    private String sign() {
+        return userKeyRing.encoder().encode(JwtEncoderParameters.from(claims())).getTokenValue();
+    }
+
+    private static JwtClaimsSet claims() {
+        return JwtClaimsSet.builder()
+                .subject("user@domain.com")
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plus(Duration.ofHours(1)))
+                .build();
+    }
+}
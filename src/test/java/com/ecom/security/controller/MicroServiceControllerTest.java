@@ -0,0 +1,88 @@
+package com.ecom.security.controller;
+
+import com.ecom.security.entity.DevicesId;
+import com.ecom.security.model.User;
+import com.ecom.security.repository.DevicesIdRepository;
+import com.ecom.security.repository.RefreshTokenRepository;
+import com.ecom.security.response.UserNotFoundException;
+import com.ecom.security.security.Digests;
+import com.ecom.security.security.RefreshTokenService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class MicroServiceControllerTest {
+
+    @Autowired
+    private MicroServiceController microServiceController;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private DevicesIdRepository devicesRepository;
+
+    private User user;
+    private DevicesId device;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setId(515151L);
+        user.setName("John Doe");
+        user.setEmail("revoked@domain.com");
+        device = device(user.getId());
+    }
+
+    @AfterEach
+    void tearDown() {
+        refreshTokenRepository.deleteAll();
+        devicesRepository.deleteAll();
+    }
+
+    // 1 : users-service invalide l'utilisateur (mot de passe, rôles modifiés) : ses refresh tokens ne sont plus échangeables
+    @Test
+    void testEvictUser_RefreshFailsAfterEviction() {
+        String refreshToken = refreshTokenService.issue(user, device);
+        User other = new User();
+        other.setId(515152L);
+        other.setName("Jane Doe");
+        other.setEmail("other@domain.com");
+        String otherToken = refreshTokenService.issue(other, device(other.getId()));
+
+        microServiceController.evictUser("revoked@domain.com");
+
+        // Vérification : refus pour l'utilisateur modifié, les autres sessions continuent
+        assertThrows(UserNotFoundException.class, () -> refreshTokenService.rotate(refreshToken, "device-123"));
+        assertNotNull(refreshTokenService.rotate(otherToken, "device-123").refreshToken());
+    }
+
+    // 2 : révocation par id : l'époque avance, le refresh token émis avant est refusé
+    @Test
+    void testRevokeUser_BumpsEpoch() {
+        String refreshToken = refreshTokenService.issue(user, device);
+
+        microServiceController.revokeUser(user.getId());
+
+        assertThrows(UserNotFoundException.class, () -> refreshTokenService.rotate(refreshToken, "device-123"));
+    }
+
+    private DevicesId device(Long userId) {
+        return devicesRepository.save(DevicesId.builder()
+                .userId(userId)
+                .deviceHash(Digests.sha256Hex("device-123"))
+                .active(true)
+                .createdAt(Instant.now())
+                .build());
+    }
+}
@@ -0,0 +1,30 @@
+package com.ecom.security.repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Cache partagé local, à la place de Redis dans les tests (même TTL, même GETDEL atomique)
+class LocalSharedCache implements SharedCache {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @Override
+    public void set(String key, String value, Duration ttl) {
+        entries.put(key, new Entry(value, Instant.now().plus(ttl)));
+    }
+
+    @Override
+    public String getAndDelete(String key) {
+        Entry entry = entries.remove(key);
+        return entry != null && entry.expiresAt().isAfter(Instant.now()) ? entry.value() : null;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private record Entry(String value, Instant expiresAt) {
+    }
+}
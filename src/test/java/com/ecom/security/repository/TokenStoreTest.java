@@ -0,0 +1,70 @@
+package com.ecom.security.repository;
+
+import com.ecom.security.entity.JwtUser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenStoreTest {
+
+    // 1 : en mémoire, le token en attente n'est remis qu'une fois
+    @Test
+    void testInMemory_PendingTokenHandedOutOnce() {
+        TokenStore tokenStore = new InMemoryTokenStore(100, new SimpleMeterRegistry());
+        UUID uuid = UUID.randomUUID();
+        tokenStore.save(pending(uuid, Instant.now().plus(Duration.ofMinutes(30))));
+
+        assertEquals(Optional.of("signed-token"), tokenStore.takePendingToken(uuid, Instant.now()));
+        assertEquals(Optional.empty(), tokenStore.takePendingToken(uuid, Instant.now()));
+        assertEquals(Optional.empty(), tokenStore.takePendingToken(UUID.randomUUID(), Instant.now()));
+    }
+
+    // 2 : cache partagé, même contrat ; un token sans validation en attente n'est pas écrit
+    @Test
+    void testSharedCache_PendingTokenHandedOutOnce() {
+        LocalSharedCache cache = new LocalSharedCache();
+        TokenStore tokenStore = new SharedCacheTokenStore(cache);
+        UUID uuid = UUID.randomUUID();
+        tokenStore.save(pending(uuid, Instant.now().plus(Duration.ofMinutes(30))));
+        tokenStore.save(JwtUser.builder().tokenHash("hash-2").userId(7L).pending(false)
+                .expiresAt(Instant.now().plus(Duration.ofMinutes(30))).build());
+
+        // Vérification : seul le token en attente est stocké
+        assertEquals(1, cache.size());
+        assertEquals(Optional.of("signed-token"), tokenStore.takePendingToken(uuid, Instant.now()));
+        assertEquals(Optional.empty(), tokenStore.takePendingToken(uuid, Instant.now()));
+    }
+
+    // 3 : un token déjà expiré n'est ni conservé ni remis
+    @Test
+    void testExpiredTokenNotStored() {
+        LocalSharedCache cache = new LocalSharedCache();
+        UUID uuid = UUID.randomUUID();
+        JwtUser expired = pending(uuid, Instant.now().minusSeconds(1));
+
+        new SharedCacheTokenStore(cache).save(expired);
+        TokenStore inMemory = new InMemoryTokenStore(100, new SimpleMeterRegistry());
+        inMemory.save(expired);
+
+        assertEquals(0, cache.size());
+        assertEquals(Optional.empty(), inMemory.takePendingToken(uuid, Instant.now()));
+    }
+
+    private JwtUser pending(UUID uuid, Instant expiresAt) {
+        return JwtUser.builder()
+                .tokenHash("hash-1")
+                .pendingToken("signed-token")
+                .pending(true)
+                .uuid(uuid)
+                .userId(7L)
+                .issuedAt(Instant.now())
+                .expiresAt(expiresAt)
+                .build();
+    }
+}
@@ -0,0 +1,64 @@
+package com.ecom.security.security;
+
+import com.ecom.security.response.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class BoundedPasswordEncoderTest {
+
+    // 1 : la vérification passe par le pool et renvoie le résultat de BCrypt
+    @Test
+    void testMatches_DelegatesToBcrypt() {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(4);
+        String hash = bcrypt.encode("password");
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(bcrypt, 2, 4, 1, new SimpleMeterRegistry());
+
+        assertTrue(encoder.matches("password", hash));
+        assertFalse(encoder.matches("wrong", hash));
+
+        // pool arrêté avec le contexte : plus aucune vérification acceptée
+        encoder.shutdown();
+        assertThrows(TooManyRequestsException.class, () -> encoder.matches("password", hash));
+    }
+
+    // 2 : thread occupé et file pleine, la vérification suivante est refusée immédiatement
+    @Test
+    void testMatches_RejectsWhenQueueFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        PasswordEncoder slow = mock(PasswordEncoder.class);
+        when(slow.matches(any(), anyString())).thenAnswer(invocation -> {
+            running.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        });
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(slow, 1, 1, 2, meterRegistry);
+
+        // 1 vérification en cours + 1 en file
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> encoder.matches("a", "hash"));
+        running.await(5, TimeUnit.SECONDS);
+        CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> encoder.matches("b", "hash"));
+        while (meterRegistry.get("executor.queued").tag("name", "bcrypt").gauge().value() < 1) {
+            Thread.sleep(5);
+        }
+
+        TooManyRequestsException exception = assertThrows(TooManyRequestsException.class, () -> encoder.matches("c", "hash"));
+        assertEquals(2, exception.getRetryAfterSeconds());
+        assertEquals(1.0, meterRegistry.get("security.password.rejected").counter().count());
+
+        release.countDown();
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,56 @@
+package com.ecom.security.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CachingClientSecretEncoderTest {
+
+    @Mock
+    private PasswordEncoder delegate;
+
+    private CachingClientSecretEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        encoder = new CachingClientSecretEncoder(delegate, Duration.ofMinutes(5), 100, new SimpleMeterRegistry());
+    }
+
+    // 1 : une vérification réussie n'est pas refaite tant qu'elle est en cache
+    @Test
+    void testMatches_SuccessIsCached() {
+        when(delegate.matches("mySuperSecret", "$2a$hash")).thenReturn(true);
+
+        assertTrue(encoder.matches("mySuperSecret", "$2a$hash"));
+        assertTrue(encoder.matches("mySuperSecret", "$2a$hash"));
+
+        // Vérification : un seul BCrypt, une seule entrée
+        verify(delegate, times(1)).matches("mySuperSecret", "$2a$hash");
+        assertEquals(1, encoder.size());
+    }
+
+    // 2 : un mauvais secret n'est jamais mémorisé, un secret validé ne vaut pas pour un autre hash stocké
+    @Test
+    void testMatches_FailuresAndOtherHashNotCached() {
+        when(delegate.matches("mySuperSecret", "$2a$hash")).thenReturn(true);
+        when(delegate.matches("wrong", "$2a$hash")).thenReturn(false);
+        encoder.matches("mySuperSecret", "$2a$hash");
+
+        assertFalse(encoder.matches("wrong", "$2a$hash"));
+        assertFalse(encoder.matches("wrong", "$2a$hash"));
+        assertFalse(encoder.matches("mySuperSecret", "$2a$rotated"));
+
+        verify(delegate, times(2)).matches("wrong", "$2a$hash");
+        verify(delegate).matches("mySuperSecret", "$2a$rotated");
+        assertEquals(1, encoder.size());
+    }
+}
@@ -0,0 +1,128 @@
+package com.ecom.security.security;
+
+import com.ecom.security.entity.DevicesId;
+import com.ecom.security.entity.RefreshToken;
+import com.ecom.security.repository.DevicesIdRepository;
+import com.ecom.security.repository.RefreshTokenRepository;
+import com.ecom.security.response.UserNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenRepository repository;
+
+    @Mock
+    private DevicesIdRepository devicesRepository;
+
+    @Mock
+    private TokenEpochService tokenEpochService;
+
+    @InjectMocks
+    private RefreshTokenService refreshTokenService;
+
+    private RefreshToken stored;
+    private DevicesId device;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(refreshTokenService, "ttl", Duration.ofDays(14));
+        ReflectionTestUtils.setField(refreshTokenService, "reuseGrace", Duration.ofSeconds(10));
+        stored = RefreshToken.builder()
+                .id(1L)
+                .tokenHash(Digests.sha256Hex("refresh-1"))
+                .family(UUID.randomUUID())
+                .userId(7L)
+                .devicesId(100L)
+                .deviceHash(Digests.sha256Hex("device-123"))
+                .epoch(3L)
+                .email("user@domain.com")
+                .scope("USER")
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plus(Duration.ofDays(14)))
+                .build();
+        when(repository.findByTokenHash(Digests.sha256Hex("refresh-1"))).thenReturn(Optional.of(stored));
+        when(tokenEpochService.isCurrent(7L, 3L)).thenReturn(true);
+        device = DevicesId.builder().id(100L).deviceHash(Digests.sha256Hex("device-123")).userId(7L).active(true).build();
+        when(devicesRepository.findById(100L)).thenReturn(Optional.of(device));
+    }
+
+    // 1 : le token présenté est consommé et remplacé par un nouveau de la même famille
+    @Test
+    void testRotate_IssuesNextTokenInSameFamily() {
+        when(repository.markUsed(eq(1L), any())).thenReturn(1);
+
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate("refresh-1", "device-123");
+
+        // Vérification : un seul nouveau token, même famille, même époque, claims recopiés
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(repository).save(captor.capture());
+        assertSame(stored, rotation.grant());
+        assertNotEquals("refresh-1", rotation.refreshToken());
+        assertEquals(Digests.sha256Hex(rotation.refreshToken()), captor.getValue().getTokenHash());
+        assertEquals(stored.getFamily(), captor.getValue().getFamily());
+        assertEquals(3L, captor.getValue().getEpoch());
+        assertEquals("user@domain.com", captor.getValue().getEmail());
+    }
+
+    // 2 : un token déjà échangé présenté à nouveau révoque toute la famille
+    @Test
+    void testRotate_ReuseRevokesFamily() {
+        stored.setUsedAt(Instant.now().minusSeconds(60));
+
+        assertThrows(UserNotFoundException.class, () -> refreshTokenService.rotate("refresh-1", "device-123"));
+
+        verify(repository).revokeFamily(stored.getFamily());
+        verify(repository, never()).save(any());
+    }
+
+    // 3 : autre appareil, appareil désactivé ou supprimé, ou nouvelle connexion depuis l'émission : l'échange est refusé
+    @Test
+    void testRotate_RejectsOtherDeviceAndOlderEpoch() {
+        assertThrows(UserNotFoundException.class, () -> refreshTokenService.rotate("refresh-1", "other-device"));
+
+        device.setActive(false);
+        assertThrows(UserNotFoundException.class, () -> refreshTokenService.rotate("refresh-1", "device-123"));
+        when(devicesRepository.findById(100L)).thenReturn(Optional.empty());
+        assertThrows(UserNotFoundException.class, () -> refreshTokenService.rotate("refresh-1", "device-123"));
+        when(devicesRepository.findById(100L)).thenReturn(Optional.of(device));
+        device.setActive(true);
+
+        when(tokenEpochService.isCurrent(7L, 3L)).thenReturn(false);
+        assertThrows(UserNotFoundException.class, () -> refreshTokenService.rotate("refresh-1", "device-123"));
+
+        verify(repository, never()).markUsed(anyLong(), any());
+        verify(repository, never()).save(any());
+    }
+
+    // 4 : double envoi du même token (échange concurrent perdu, ou renvoi juste après) : refus sans révoquer la famille
+    @Test
+    void testRotate_ConcurrentDoubleSubmitDoesNotRevoke() {
+        when(repository.markUsed(eq(1L), any())).thenReturn(0);
+        assertThrows(UserNotFoundException.class, () -> refreshTokenService.rotate("refresh-1", "device-123"));
+
+        stored.setUsedAt(Instant.now().minusSeconds(2));
+        assertThrows(UserNotFoundException.class, () -> refreshTokenService.rotate("refresh-1", "device-123"));
+
+        verify(repository, never()).revokeFamily(any());
+        verify(repository, never()).save(any());
+    }
+}
@@ -0,0 +1,41 @@
+package com.ecom.security.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SigninMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private SigninMetrics signinMetrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        signinMetrics = new SigninMetrics(meterRegistry);
+    }
+
+    // 1 : les étapes d'un /signin sont publiées avec le résultat du login
+    @Test
+    void testFinish_RecordsPhasesWithOutcome() {
+        signinMetrics.start();
+        assertEquals("user", signinMetrics.time(SigninMetrics.USERS_FETCH, () -> "user"));
+        signinMetrics.run(SigninMetrics.SIGN, () -> { });
+        signinMetrics.finish(SigninMetrics.NEW_DEVICE);
+
+        assertEquals(1, meterRegistry.get("security.signin.phase").tag("phase", "users_fetch").tag("outcome", "new_device").timer().count());
+        assertEquals(1, meterRegistry.get("security.signin.phase").tag("phase", "sign").tag("outcome", "new_device").timer().count());
+        assertEquals(1, meterRegistry.get("security.signin").tag("outcome", "new_device").timer().count());
+    }
+
+    // 2 : en dehors d'un /signin, rien n'est enregistré
+    @Test
+    void testTime_OutsideSigninNotRecorded() {
+        assertEquals(42, signinMetrics.time(SigninMetrics.SIGN, () -> 42));
+        signinMetrics.finish(SigninMetrics.OK);
+
+        assertTrue(meterRegistry.getMeters().isEmpty());
+    }
+}
@@ -0,0 +1,63 @@
+package com.ecom.security.security;
+
+import com.ecom.security.response.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SigninRateLimiterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private SigninRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = new SigninRateLimiter(meterRegistry, true, 100, Duration.ofSeconds(1), 3, Duration.ofSeconds(30), 30, Duration.ofMinutes(1), 1000);
+    }
+
+    // 1 : seuls les échecs vident le seau du compte ; au-delà, la tentative suivante est refusée
+    @Test
+    void testCheck_OnlyFailuresCountForAccount() {
+        for (int i = 0; i < 10; i++) {
+            limiter.check("user@domain.com", "10.0.0.1");
+        }
+        for (int i = 0; i < 3; i++) {
+            limiter.recordFailure("user@domain.com", "10.0.0.1");
+        }
+
+        // Vérification : refus avec Retry-After, comptabilisé comme limite par compte et IP
+        TooManyRequestsException exception = assertThrows(TooManyRequestsException.class,
+                () -> limiter.check("User@Domain.com ", "10.0.0.1"));
+        assertTrue(exception.getRetryAfterSeconds() >= 1);
+        assertEquals(1.0, meterRegistry.get("security.signin.rate-limited").tag("key", "email-ip").counter().count());
+    }
+
+    // 2 : des échecs venant d'autres adresses ne bloquent pas le titulaire du compte
+    @Test
+    void testCheck_FailuresFromOtherIpsDoNotLockAccount() {
+        for (int i = 0; i < 20; i++) {
+            limiter.recordFailure("user@domain.com", "203.0.113." + (i % 5));
+        }
+
+        assertDoesNotThrow(() -> limiter.check("user@domain.com", "10.0.0.1"));
+        assertThrows(TooManyRequestsException.class, () -> limiter.check("user@domain.com", "203.0.113.1"));
+    }
+
+    // 3 : attaque répartie sur beaucoup d'adresses : au-delà du seuil large par compte, toutes les IP sont refusées
+    @Test
+    void testCheck_DistributedFailuresLockAccount() {
+        for (int i = 0; i < 30; i++) {
+            limiter.recordFailure("user@domain.com", "198.51.100." + i);
+        }
+
+        assertThrows(TooManyRequestsException.class, () -> limiter.check("user@domain.com", "10.0.0.1"));
+        assertDoesNotThrow(() -> limiter.check("other@domain.com", "10.0.0.1"));
+        assertEquals(1.0, meterRegistry.get("security.signin.rate-limited").tag("key", "account").counter().count());
+        assertEquals(0.0, meterRegistry.get("security.signin.rate-limited").tag("key", "email-ip").counter().count());
+    }
+}
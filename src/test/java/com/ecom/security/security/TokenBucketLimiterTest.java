@@ -0,0 +1,42 @@
+package com.ecom.security.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketLimiterTest {
+
+    // 1 : la rafale est servie, la tentative suivante attend le prochain jeton
+    @Test
+    void testTryAcquire_BurstThenRefill() {
+        AtomicLong clock = new AtomicLong(-5_000_000_000L);
+        TokenBucketLimiter limiter = new TokenBucketLimiter(3, Duration.ofSeconds(10), 100, clock::get);
+
+        assertTrue(limiter.tryAcquire("user@domain.com"));
+        assertTrue(limiter.tryAcquire("user@domain.com"));
+        assertTrue(limiter.tryAcquire("user@domain.com"));
+        assertFalse(limiter.tryAcquire("user@domain.com"));
+        assertEquals(Duration.ofSeconds(10), limiter.retryAfter("user@domain.com"));
+
+        // Vérification : un jeton regagné après 10 s, un seul
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertEquals(Duration.ZERO, limiter.retryAfter("user@domain.com"));
+        assertTrue(limiter.tryAcquire("user@domain.com"));
+        assertFalse(limiter.tryAcquire("user@domain.com"));
+    }
+
+    // 2 : chaque clé a son propre seau
+    @Test
+    void testTryAcquire_KeysAreIndependent() {
+        AtomicLong clock = new AtomicLong();
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, Duration.ofMinutes(1), 100, clock::get);
+
+        assertTrue(limiter.tryAcquire("10.0.0.1"));
+        assertFalse(limiter.tryAcquire("10.0.0.1"));
+        assertTrue(limiter.tryAcquire("10.0.0.2"));
+        assertEquals(2, limiter.size());
+    }
+}
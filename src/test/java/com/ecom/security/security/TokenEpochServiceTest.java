@@ -0,0 +1,54 @@
+package com.ecom.security.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class TokenEpochServiceTest {
+
+    @Autowired
+    private TokenEpochService tokenEpochService;
+
+    // 1 : premières connexions simultanées d'un même utilisateur : aucune erreur, une époque distincte chacune
+    @Test
+    void testBump_ConcurrentFirstLogins() throws Exception {
+        Long userId = 424242L;
+        int logins = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(logins);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < logins; i++) {
+                Callable<Long> login = () -> {
+                    start.await();
+                    return tokenEpochService.bump(userId);
+                };
+                results.add(executor.submit(login));
+            }
+            start.countDown();
+
+            List<Long> epochs = new ArrayList<>();
+            for (Future<Long> result : results) {
+                epochs.add(result.get());
+            }
+
+            // Vérification : époques 1..8 sans doublon, la dernière est celle retenue
+            assertEquals(LongStream.rangeClosed(1, logins).boxed().toList(), epochs.stream().sorted().toList());
+            assertEquals(logins, tokenEpochService.current(userId));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
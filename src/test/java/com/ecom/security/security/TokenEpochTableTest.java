@@ -0,0 +1,36 @@
+package com.ecom.security.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenEpochTableTest {
+
+    // 1 : un utilisateur inconnu est à l'époque 0, l'époque ne recule jamais
+    @Test
+    void testPutMax_KeepsHighestEpoch() {
+        TokenEpochTable table = new TokenEpochTable(16);
+        assertEquals(0, table.get(42L));
+
+        table.putMax(42L, 3);
+        table.putMax(42L, 2);
+
+        assertEquals(3, table.get(42L));
+        assertEquals(1, table.size());
+    }
+
+    // 2 : l'agrandissement de la table conserve toutes les époques
+    @Test
+    void testPutMax_GrowsBeyondInitialCapacity() {
+        TokenEpochTable table = new TokenEpochTable(4);
+        for (long userId = 1; userId <= 10_000; userId++) {
+            table.putMax(userId, userId * 2);
+        }
+
+        assertEquals(10_000, table.size());
+        for (long userId = 1; userId <= 10_000; userId++) {
+            assertEquals(userId * 2, table.get(userId));
+        }
+        assertEquals(0, table.get(10_001L));
+    }
+}
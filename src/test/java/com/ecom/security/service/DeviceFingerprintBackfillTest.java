@@ -0,0 +1,75 @@
+package com.ecom.security.service;
+
+import com.ecom.security.entity.DevicesId;
+import com.ecom.security.entity.JobLock;
+import com.ecom.security.repository.DevicesIdRepository;
+import com.ecom.security.repository.JobLockRepository;
+import com.ecom.security.security.Digests;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class DeviceFingerprintBackfillTest {
+
+    @Autowired
+    private DeviceFingerprintBackfill backfill;
+
+    @Autowired
+    private DevicesIdRepository devicesRepository;
+
+    @Autowired
+    private JobLockRepository jobLockRepository;
+
+    @AfterEach
+    void tearDown() {
+        devicesRepository.deleteAll();
+        jobLockRepository.deleteAll();
+    }
+
+    // 1 : doublons (même fingerprint, même utilisateur) fusionnés sur l'appareil validé, sans erreur de contrainte unique
+    @Test
+    void testRun_MergesDuplicatesKeepingActiveDevice() {
+        legacy(9L, "fingerprint-1", false);
+        DevicesId active = legacy(9L, "fingerprint-1", true);
+        legacy(9L, "fingerprint-1", false);
+        legacy(9L, "fingerprint-2", false);
+
+        backfill.run(null);
+
+        // Vérification : une ligne par appareil, l'appareil actif est conservé
+        List<DevicesId> devices = devicesRepository.findAll();
+        assertEquals(2, devices.size());
+        DevicesId kept = devicesRepository.findByDeviceHashAndUserId(Digests.sha256Hex("fingerprint-1"), 9L).orElseThrow();
+        assertEquals(active.getId(), kept.getId());
+        assertNull(kept.getDeviceId());
+        assertTrue(devicesRepository.findByDeviceHashAndUserId(Digests.sha256Hex("fingerprint-2"), 9L).isPresent());
+    }
+
+    // 2 : verrou détenu par une autre instance : rien n'est fait, le démarrage continue
+    @Test
+    void testRun_SkippedWhileAnotherInstanceHoldsLock() {
+        jobLockRepository.save(new JobLock(DeviceFingerprintBackfill.LOCK, Instant.now().plus(Duration.ofMinutes(5)), "other-instance"));
+        legacy(9L, "fingerprint-1", false);
+
+        assertDoesNotThrow(() -> backfill.run(null));
+
+        assertNull(devicesRepository.findAll().get(0).getDeviceHash());
+    }
+
+    private DevicesId legacy(Long userId, String fingerprint, boolean active) {
+        return devicesRepository.save(DevicesId.builder()
+                .userId(userId)
+                .deviceId(fingerprint)
+                .active(active)
+                .createdAt(Instant.now())
+                .build());
+    }
+}
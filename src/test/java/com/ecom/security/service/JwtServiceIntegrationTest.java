@@ -6,12 +6,19 @@ import com.ecom.security.entity.JwtUser;
 import com.ecom.security.model.User;
 import com.ecom.security.model.Validation;
 import com.ecom.security.repository.DevicesIdRepository;
-import com.ecom.security.repository.JwtRepository;
+import com.ecom.security.repository.TokenStore;
+import com.ecom.security.repository.ValidationOutboxRepository;
+import com.ecom.security.security.Digests;
 import com.ecom.security.security.JwtService;
+import com.ecom.security.security.RefreshTokenService;
+import com.ecom.security.security.SigninMetrics;
+import com.ecom.security.security.TokenEpochService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
 import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.http.ResponseEntity;
 
 import java.util.Map;
@@ -29,7 +36,7 @@ class JwtServiceIntegrationTest {
     private JwtService jwtService;
 
     @Mock
-    private JwtRepository jwtRepository;
+    private TokenStore tokenStore;
 
     @Mock
     private DevicesIdRepository devicesRepository;
@@ -40,6 +47,21 @@ class JwtServiceIntegrationTest {
     @Mock
     private TokenMicroService tokenMicroService;
 
+    @Mock
+    private TokenEpochService tokenEpochService;
+
+    @Mock
+    private ValidationOutboxRepository validationOutboxRepository;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @Spy
+    private TransactionOperations transactionOperations = TransactionOperations.withoutTransaction();
+
+    @Spy
+    private SigninMetrics signinMetrics = new SigninMetrics(new SimpleMeterRegistry());
+
     // Trois types d’utilisateurs
     private User activeUser;
     private User inactiveUser;
@@ -104,8 +126,11 @@ class JwtServiceIntegrationTest {
         }).when(jwtService).generateJwt(any(User.class));
 
         // Simule le comportement du repo de devices
-        when(devicesRepository.findByDeviceId("device-123")).thenReturn(Optional.of(existingDevice)); // device existant
-        when(devicesRepository.findByDeviceId("new-device")).thenReturn(Optional.empty());            // device inconnu
+        when(devicesRepository.findByDeviceHashAndUserId(Digests.sha256Hex("device-123"), activeUser.getId())).thenReturn(Optional.of(existingDevice)); // device existant
+        when(devicesRepository.findByDeviceHashAndUserId(Digests.sha256Hex("new-device"), activeUser.getId())).thenReturn(Optional.empty());            // device inconnu
+
+        // Refresh token émis pour un appareil validé
+        when(refreshTokenService.issue(any(User.class), any(DevicesId.class))).thenReturn("mocked-refresh-token");
 
         // Simule l'envoi d'un code de validation
         when(validationRestClient.sendValidation(anyString(), any())).thenReturn(new Validation(999L));
@@ -121,7 +146,7 @@ class JwtServiceIntegrationTest {
         // Vérification, status 200 +token retourné + save
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals("mocked-jwt-token", response.getBody().get("bearer"));
-        verify(jwtRepository).save(any(JwtUser.class));
+        verify(tokenStore).save(any(JwtUser.class));
     }
 
     // Cas 2 : utilisateur actif avec un NOUVEAU device
@@ -134,7 +159,7 @@ class JwtServiceIntegrationTest {
         // Vérification, code 403 FORBIDDEN + UUID ok + status pending
         assertEquals(HttpStatus.FORBIDDEN, response.getStatusCode());
         assertNotNull(response.getBody().get("uuid"));
-        verify(jwtRepository).save(any(JwtUser.class));
+        verify(tokenStore).save(any(JwtUser.class));
     }
 
     // Cas 3 : utilisateur inactif essaye de générer un token
@@ -147,7 +172,7 @@ class JwtServiceIntegrationTest {
 
         // Vérification, message : compte inactif + token non save
         assertTrue(exception.getMessage().contains("Compte non activé"));
-        verify(jwtRepository, never()).save(any(JwtUser.class));
+        verify(tokenStore, never()).save(any(JwtUser.class));
     }
 
     // Cas 4 : utilisateur ADMIN sans deviceId
@@ -159,7 +184,7 @@ class JwtServiceIntegrationTest {
         // Vérification, status 200 + token + save
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals("mocked-jwt-token", response.getBody().get("bearer"));
-        verify(jwtRepository).save(any(JwtUser.class));
+        verify(tokenStore).save(any(JwtUser.class));
     }
 }
 
@@ -5,31 +5,40 @@ import static org.mockito.Mockito.*;
 
 import com.ecom.security.entity.DevicesId;
 import com.ecom.security.entity.JwtUser;
+import com.ecom.security.entity.ValidationOutbox;
 import com.ecom.security.model.Role;
 import com.ecom.security.model.Validation;
 import com.ecom.security.response.UserNotFoundException;
+import com.ecom.security.security.Digests;
 import com.ecom.security.security.JwtService;
+import com.ecom.security.security.RefreshTokenService;
+import com.ecom.security.security.SigninMetrics;
+import com.ecom.security.security.TokenEpochService;
 import com.ecom.security.model.User;
 import com.ecom.security.config.JwtConfig;
 import com.ecom.security.clients.ValidationRestClient;
 import com.ecom.security.repository.DevicesIdRepository;
-import com.ecom.security.repository.JwtRepository;
+import com.ecom.security.repository.TokenStore;
+import com.ecom.security.repository.ValidationOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
 import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Instant;
 import java.util.*;
-import java.util.stream.Stream;
 
 class JwtServiceTest {
 
     @Mock
-    private JwtRepository jwtRepository;
+    private TokenStore tokenStore;
 
     @Mock
     private DevicesIdRepository devicesRepository;
@@ -40,6 +49,21 @@ class JwtServiceTest {
     @Mock
     private TokenMicroService tokenMicroService;
 
+    @Mock
+    private TokenEpochService tokenEpochService;
+
+    @Mock
+    private ValidationOutboxRepository validationOutboxRepository;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @Spy
+    private TransactionOperations transactionOperations = TransactionOperations.withoutTransaction();
+
+    @Spy
+    private SigninMetrics signinMetrics = new SigninMetrics(new SimpleMeterRegistry());
+
     @Mock
     private JwtConfig jwtConfig;
 
@@ -81,7 +105,7 @@ class JwtServiceTest {
         // Vérifications
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(jwtMap, response.getBody());
-        verify(jwtRepository).save(any(JwtUser.class));
+        verify(tokenStore).save(any(JwtUser.class));
     }
 
     // 2 : Utilisateur inactif ave le cas du service de validation indisponible
@@ -165,7 +189,7 @@ class JwtServiceTest {
         when(((UserDetailsImpl) userDetails).getUser()).thenReturn(user);
 
         // Le device n'existe pas encore
-        when(devicesRepository.findByDeviceId("device123")).thenReturn(Optional.empty());
+        when(devicesRepository.findByDeviceHashAndUserId(Digests.sha256Hex("device123"), user.getId())).thenReturn(Optional.empty());
         when(tokenMicroService.tokenService()).thenReturn("mockToken");
         when(validationRestClient.sendValidation(anyString(), any())).thenReturn(new Validation(10L));
 
@@ -200,7 +224,7 @@ class JwtServiceTest {
         UserDetails userDetails = mock(UserDetailsImpl.class);
         when(((UserDetailsImpl) userDetails).getUser()).thenReturn(user);
 
-        when(devicesRepository.findByDeviceId("device123")).thenReturn(Optional.of(device));
+        when(devicesRepository.findByDeviceHashAndUserId(Digests.sha256Hex("device123"), user.getId())).thenReturn(Optional.of(device));
         when(tokenMicroService.tokenService()).thenReturn("mockToken");
         when(validationRestClient.sendValidation(anyString(), any())).thenReturn(new Validation(20L));
 
@@ -235,7 +259,9 @@ class JwtServiceTest {
         UserDetails userDetails = mock(UserDetailsImpl.class);
         when(((UserDetailsImpl) userDetails).getUser()).thenReturn(user);
 
-        when(devicesRepository.findByDeviceId("device123")).thenReturn(Optional.of(device));
+        when(devicesRepository.findByDeviceHashAndUserId(Digests.sha256Hex("device123"), user.getId())).thenReturn(Optional.of(device));
+
+        when(refreshTokenService.issue(user, device)).thenReturn("fakeRefresh");
 
         JwtService spyService = spy(jwtService);
         doReturn(Map.of("bearer", "fakeToken")).when(spyService).generateJwt(user);
@@ -243,46 +269,24 @@ class JwtServiceTest {
         // Exécution
         ResponseEntity<Map<String, String>> response = spyService.generate(userDetails, "device123");
 
-        // Vérifications
+        // Vérifications : token d'accès + refresh token lié à l'appareil
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(Map.of("bearer", "fakeToken"), response.getBody());
+        assertEquals(Map.of("bearer", "fakeToken", "refreshToken", "fakeRefresh"), response.getBody());
     }
 
-    // 8 : Désactivation de tous les anciens tokens d'un utilisateur
+    // 8 : Désactivation de tous les anciens tokens d'un utilisateur (passage à l'époque suivante)
     @Test
-    void testDisableTokens_callsFindUserAndDeleteAll() {
+    void testDisableTokens_BumpsEpoch() {
         // Préparation
         User user = new User();
         user.setId(42L);
 
-        JwtUser j1 = new JwtUser();
-        j1.setId(1);
-        j1.setUserId(42L);
-        j1.setToken("t1");
-
-        JwtUser j2 = new JwtUser();
-        j2.setId(2);
-        j2.setUserId(42L);
-        j2.setToken("t2");
-
-        // On simule que la méthode findUser renvoie deux tokens actifs
-        when(jwtRepository.findUser(user.getId())).thenReturn(Stream.of(j1, j2));
-
         // Exécution
         jwtService.disableTokens(user);
 
-        // Vérification que les bonnes méthodes sont appelées
-        verify(jwtRepository, times(1)).findUser(user.getId());
-
-        @SuppressWarnings("unchecked")
-        ArgumentCaptor<List<JwtUser>> captor = ArgumentCaptor.forClass((Class) List.class);
-        verify(jwtRepository, times(1)).deleteAll(captor.capture());
-
-        List<JwtUser> deleted = captor.getValue();
-        assertNotNull(deleted);
-        assertEquals(2, deleted.size());
-        assertTrue(deleted.contains(j1));
-        assertTrue(deleted.contains(j2));
+        // Vérification : un seul incrément d'époque, plus de lecture / suppression des lignes de tokens
+        verify(tokenEpochService, times(1)).bump(42L);
+        verifyNoInteractions(tokenStore);
     }
 
     // 9 : Génération d'un JWT valide
@@ -321,10 +325,97 @@ class JwtServiceTest {
         // Exécution
         jwtService.removeUselessJwt();
 
-        // Vérification que la méthode de suppression est bien appelée
-        verify(jwtRepository, times(1))
-                .deleteAllByExpireAtAndDesactive(true, true);
+        // Vérification que la suppression des tokens expirés est bien appelée
+        verify(tokenStore, times(1))
+                .removeExpired(any(Instant.class));
     }
 
-}
+    // 11 : Avec l'outbox, le nouvel appareil est enregistré sans attendre validation-service
+    @Test
+    void testGenerate_NewDevice_OutboxEnabled_NoRemoteCall() {
+        // Préparation
+        User user = new User();
+        user.setId(4L);
+        user.setEmail("user@test.com");
+        user.setActive(true);
+        user.setUsername("user");
+
+        UserDetails userDetails = mock(UserDetailsImpl.class);
+        when(((UserDetailsImpl) userDetails).getUser()).thenReturn(user);
+        when(devicesRepository.findByDeviceHashAndUserId(Digests.sha256Hex("device123"), user.getId())).thenReturn(Optional.empty());
+        ReflectionTestUtils.setField(jwtService, "validationOutboxEnabled", true);
+
+        JwtService spyService = spy(jwtService);
+        doReturn(Map.of("bearer", "fakeToken")).when(spyService).generateJwt(user);
 
+        // Exécution
+        ResponseEntity<Map<String, String>> response = spyService.generate(userDetails, "device123");
+
+        // Vérifications : option = référence de l'outbox, aucun appel distant pendant le login
+        ArgumentCaptor<ValidationOutbox> captor = ArgumentCaptor.forClass(ValidationOutbox.class);
+        verify(validationOutboxRepository, times(1)).save(captor.capture());
+        verifyNoInteractions(validationRestClient);
+        verify(transactionOperations, times(1)).execute(any());
+        assertEquals(HttpStatus.FORBIDDEN, response.getStatusCode());
+        assertEquals(captor.getValue().getReference().toString(), response.getBody().get("option"));
+        assertEquals("deviceId", captor.getValue().getType());
+        assertEquals(ValidationOutbox.Status.PENDING, captor.getValue().getStatus());
+    }
+
+    // 12 : Sans outbox, validation-service est appelé hors de toute transaction
+    @Test
+    void testGenerate_NewDevice_RemoteCallOutsideTransaction() {
+        // Préparation
+        User user = new User();
+        user.setId(4L);
+        user.setEmail("user@test.com");
+        user.setActive(true);
+        user.setUsername("user");
+
+        UserDetails userDetails = mock(UserDetailsImpl.class);
+        when(((UserDetailsImpl) userDetails).getUser()).thenReturn(user);
+        when(devicesRepository.findByDeviceHashAndUserId(Digests.sha256Hex("device123"), user.getId())).thenReturn(Optional.empty());
+        when(tokenMicroService.tokenService()).thenReturn("mockToken");
+        when(validationRestClient.sendValidation(anyString(), any())).thenReturn(new Validation(10L));
+
+        JwtService spyService = spy(jwtService);
+        doReturn(Map.of("bearer", "fakeToken")).when(spyService).generateJwt(user);
+
+        // Exécution
+        spyService.generate(userDetails, "device123");
+
+        // Vérifications : l'appareil est sauvegardé avant l'appel, sans transaction englobante
+        InOrder inOrder = inOrder(devicesRepository, validationRestClient);
+        inOrder.verify(devicesRepository).save(any(DevicesId.class));
+        inOrder.verify(validationRestClient).sendValidation(anyString(), any());
+        verify(transactionOperations, never()).execute(any());
+    }
+
+    // 13 : Sans outbox, validation-service en échec : l'appareil enregistré est retiré
+    @Test
+    void testGenerate_NewDevice_RemovedWhenValidationFails() {
+        // Préparation
+        User user = new User();
+        user.setId(4L);
+        user.setEmail("user@test.com");
+        user.setActive(true);
+        user.setUsername("user");
+
+        UserDetails userDetails = mock(UserDetailsImpl.class);
+        when(((UserDetailsImpl) userDetails).getUser()).thenReturn(user);
+        when(devicesRepository.findByDeviceHashAndUserId(Digests.sha256Hex("device123"), user.getId())).thenReturn(Optional.empty());
+        when(tokenMicroService.tokenService()).thenReturn("mockToken");
+        when(validationRestClient.sendValidation(anyString(), any())).thenReturn(new Validation(null));
+
+        // Exécution
+        UserNotFoundException ex = assertThrows(UserNotFoundException.class, () -> jwtService.generate(userDetails, "device123"));
+
+        // Vérifications : l'appareil sauvegardé est supprimé, aucun token n'est émis
+        assertEquals("Service indisponible", ex.getMessage());
+        ArgumentCaptor<DevicesId> captor = ArgumentCaptor.forClass(DevicesId.class);
+        verify(devicesRepository).save(captor.capture());
+        verify(devicesRepository).delete(captor.getValue());
+        verifyNoInteractions(tokenStore);
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.ecom.security.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    // 1 : des appels simultanés sur la même clé partagent un seul appel distant
+    @Test
+    void testExecute_ConcurrentCallsShareOneCall() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SingleFlight<String, String> singleFlight = new SingleFlight<>(meterRegistry, "test");
+        AtomicInteger remoteCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("user@domain.com", () -> {
+                    remoteCalls.incrementAndGet();
+                    awaitQuietly(release);
+                    return "user";
+                })));
+            }
+            // on attend que les 7 autres appelants soient en attente du premier
+            while (meterRegistry.get("security.single-flight.calls").tag("result", "shared").counter().count() < 7) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("user", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Vérification : un seul appel, et rien ne reste en vol
+        assertEquals(1, remoteCalls.get());
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    // 2 : une erreur n'est pas mémorisée, l'appel suivant repart vers le service
+    @Test
+    void testExecute_FailureNotKept() {
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>(new SimpleMeterRegistry(), "test");
+
+        assertThrows(IllegalStateException.class,
+                () -> singleFlight.execute(1L, () -> { throw new IllegalStateException("users-service indisponible"); }));
+
+        assertEquals("user", singleFlight.execute(1L, () -> "user"));
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    // 3 : une exception vérifiée levée sans être déclarée est transmise aux appelants en attente (pas de blocage)
+    @Test
+    void testExecute_SneakyCheckedExceptionReleasesWaiters() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>(meterRegistry, "test");
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> singleFlight.execute(1L, () -> {
+                awaitQuietly(release);
+                return SingleFlightTest.<String, RuntimeException>sneakyThrow(new IOException("connexion réinitialisée"));
+            }));
+            while (singleFlight.inFlight() == 0) {
+                Thread.sleep(5);
+            }
+            Future<String> waiting = executor.submit(() -> singleFlight.execute(1L, () -> "user"));
+            while (meterRegistry.get("security.single-flight.calls").tag("result", "shared").counter().count() < 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            // Vérification : les deux appelants reçoivent l'exception d'origine
+            ExecutionException firstError = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IOException.class, firstError.getCause());
+            ExecutionException waitingError = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IOException.class, waitingError.getCause().getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T, E extends Throwable> T sneakyThrow(Throwable e) throws E {
+        throw (E) e;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
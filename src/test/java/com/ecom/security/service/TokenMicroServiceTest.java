@@ -0,0 +1,78 @@
+package com.ecom.security.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TokenMicroServiceTest {
+
+    @Mock
+    private JwtEncoder jwtEncoder;
+
+    private TokenMicroService tokenMicroService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        // Chaque signature renvoie un token différent
+        Jwt first = mock(Jwt.class);
+        Jwt second = mock(Jwt.class);
+        when(first.getTokenValue()).thenReturn("tech-token-1");
+        when(second.getTokenValue()).thenReturn("tech-token-2");
+        when(jwtEncoder.encode(any())).thenReturn(first, second);
+
+        tokenMicroService = new TokenMicroService(jwtEncoder, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(tokenMicroService, "securityServiceUrl", "http://localhost:8091/api");
+        ReflectionTestUtils.setField(tokenMicroService, "tokenTtl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(tokenMicroService, "refreshBefore", Duration.ofMinutes(5));
+    }
+
+    // 1 : le token signé au démarrage est réutilisé sans nouvelle signature
+    @Test
+    void testTokenService_ReusesCachedToken() {
+        tokenMicroService.warmUp();
+
+        assertEquals("tech-token-1", tokenMicroService.tokenService());
+        assertEquals("tech-token-1", tokenMicroService.tokenService());
+
+        // Vérification : une seule signature, deux hits
+        verify(jwtEncoder, times(1)).encode(any());
+        assertEquals(2, tokenMicroService.getHitCount());
+        assertEquals(1, tokenMicroService.getRefreshCount());
+    }
+
+    // 2 : sans token en cache, l'appelant signe lui-même
+    @Test
+    void testTokenService_MintsWhenEmpty() {
+        assertEquals("tech-token-1", tokenMicroService.tokenService());
+
+        verify(jwtEncoder, times(1)).encode(any());
+        assertEquals(0, tokenMicroService.getHitCount());
+    }
+
+    // 3 : proche de l'expiration, l'ancien token est servi et le renouvellement part en arrière-plan
+    @Test
+    void testTokenService_RefreshesInBackground() {
+        // marge plus grande que la durée de vie : le token est toujours "à renouveler"
+        ReflectionTestUtils.setField(tokenMicroService, "refreshBefore", Duration.ofHours(2));
+        tokenMicroService.warmUp();
+
+        assertEquals("tech-token-1", tokenMicroService.tokenService());
+
+        // Vérification : la seconde signature arrive sans bloquer l'appelant
+        verify(jwtEncoder, timeout(2000).times(2)).encode(any());
+        tokenMicroService.shutdown();
+    }
+}
@@ -0,0 +1,94 @@
+package com.ecom.security.service;
+
+import com.ecom.security.clients.UserRestClient;
+import com.ecom.security.model.User;
+import com.ecom.security.response.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class UserLookupServiceTest {
+
+    @Mock
+    private UserRestClient userRestClient;
+
+    @Mock
+    private TokenMicroService tokenMicroService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserLookupService userLookupService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(tokenMicroService.tokenService()).thenReturn("tech-token");
+        meterRegistry = new SimpleMeterRegistry();
+        // cache de login désactivé (TTL nul) : chaque lecture repart vers users-service
+        userLookupService = new UserLookupService(userRestClient, tokenMicroService, meterRegistry,
+                Duration.ZERO, 100, Duration.ofHours(1), 100);
+    }
+
+    // 1 : users-service en panne, la dernière version connue de l'utilisateur est servie
+    @Test
+    void testFindByEmailLogin_ServesLastKnownGoodOnOutage() {
+        User user = new User();
+        user.setId(1L);
+        user.setName("John Doe");
+        user.setEmail("user@domain.com");
+        when(userRestClient.findByEmailLogin(anyString(), eq("user@domain.com")))
+                .thenReturn(user)
+                .thenThrow(new ServiceUnavailableException("users-service indisponible"));
+
+        assertSame(user, userLookupService.findByEmailLogin("user@domain.com"));
+        assertSame(user, userLookupService.findByEmailLogin("user@domain.com"));
+
+        // Vérification : deux appels distants, le second servi depuis le cache de secours
+        verify(userRestClient, times(2)).findByEmailLogin(anyString(), eq("user@domain.com"));
+        assertEquals(1.0, meterRegistry.get("security.users.stale").tag("lookup", "usersLogin").tag("result", "served").counter().count());
+    }
+
+    // 2 : sans version connue (ou après une invalidation), la panne remonte telle quelle
+    @Test
+    void testFindByEmailLogin_NoStaleCopyAfterEvict() {
+        User user = new User();
+        user.setId(1L);
+        user.setName("John Doe");
+        user.setEmail("user@domain.com");
+        when(userRestClient.findByEmailLogin(anyString(), eq("user@domain.com")))
+                .thenReturn(user)
+                .thenThrow(new ServiceUnavailableException("users-service indisponible"));
+
+        userLookupService.findByEmailLogin("user@domain.com");
+        userLookupService.evict("user@domain.com");
+
+        assertThrows(ServiceUnavailableException.class, () -> userLookupService.findByEmailLogin("user@domain.com"));
+        assertEquals(1.0, meterRegistry.get("security.users.stale").tag("lookup", "usersLogin").tag("result", "missing").counter().count());
+    }
+
+    // 3 : l'invalidation retire aussi la copie de secours lue par id (proxy /users/{id})
+    @Test
+    void testFindUserById_NoStaleCopyAfterEvict() {
+        User user = new User();
+        user.setId(1L);
+        user.setName("John Doe");
+        user.setEmail("User@Domain.com");
+        when(userRestClient.findUserById(1L))
+                .thenReturn(user)
+                .thenThrow(new ServiceUnavailableException("users-service indisponible"));
+
+        userLookupService.findUserById(1L);
+        userLookupService.evict("user@domain.com");
+
+        assertThrows(ServiceUnavailableException.class, () -> userLookupService.findUserById(1L));
+        assertEquals(1.0, meterRegistry.get("security.users.stale").tag("lookup", "usersById").tag("result", "missing").counter().count());
+    }
+}
@@ -0,0 +1,119 @@
+package com.ecom.security.service;
+
+import com.ecom.security.clients.ValidationRestClient;
+import com.ecom.security.entity.ValidationOutbox;
+import com.ecom.security.model.Validation;
+import com.ecom.security.repository.ValidationOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ValidationOutboxDispatcherTest {
+
+    @Mock
+    private ValidationOutboxRepository outboxRepository;
+
+    @Mock
+    private ValidationRestClient validationRestClient;
+
+    @Mock
+    private TokenMicroService tokenMicroService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ValidationOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        when(tokenMicroService.tokenService()).thenReturn("mockToken");
+        when(outboxRepository.renewLease(any(), any(), any(), any())).thenReturn(1);
+        dispatcher = new ValidationOutboxDispatcher(outboxRepository, validationRestClient, tokenMicroService,
+                TransactionOperations.withoutTransaction(), meterRegistry,
+                10, 3, Duration.ofSeconds(2), Duration.ofMinutes(5), Duration.ofSeconds(30));
+    }
+
+    // 1 : une demande expédiée passe à SENT avec la référence transmise à validation-service
+    @Test
+    void testDispatch_SentOnSuccess() {
+        ValidationOutbox outbox = pending(0);
+        when(outboxRepository.lockDue(eq(ValidationOutbox.Status.PENDING), any(Instant.class), any())).thenReturn(List.of(outbox));
+        when(validationRestClient.sendValidation(anyString(), anyString(), any())).thenReturn(new Validation(10L));
+
+        dispatcher.dispatch();
+
+        verify(validationRestClient).sendValidation(eq("Bearer mockToken"), eq(outbox.getReference().toString()),
+                argThat(dto -> outbox.getReference().equals(dto.getReference())));
+        assertEquals(ValidationOutbox.Status.SENT, outbox.getStatus());
+        assertNotNull(outbox.getSentAt());
+        verify(outboxRepository).save(outbox);
+    }
+
+    // 2 : validation-service indisponible (fallback sans id) : nouvelle tentative plus tard
+    @Test
+    void testDispatch_RetryWithBackoff() {
+        ValidationOutbox outbox = pending(0);
+        when(outboxRepository.lockDue(eq(ValidationOutbox.Status.PENDING), any(Instant.class), any())).thenReturn(List.of(outbox));
+        when(validationRestClient.sendValidation(anyString(), anyString(), any())).thenReturn(new Validation(null));
+
+        dispatcher.dispatch();
+
+        assertEquals(ValidationOutbox.Status.PENDING, outbox.getStatus());
+        assertEquals(1, outbox.getAttempts());
+        assertTrue(outbox.getNextAttemptAt().isAfter(Instant.now().plusSeconds(1)));
+        assertEquals(1.0, meterRegistry.get("security.validation.outbox.dispatched").tag("result", "retry").counter().count());
+    }
+
+    // 3 : au-delà du nombre maximum de tentatives la demande est abandonnée
+    @Test
+    void testDispatch_FailedAfterMaxAttempts() {
+        ValidationOutbox outbox = pending(2);
+        when(outboxRepository.lockDue(eq(ValidationOutbox.Status.PENDING), any(Instant.class), any())).thenReturn(List.of(outbox));
+        when(validationRestClient.sendValidation(anyString(), anyString(), any())).thenThrow(new IllegalStateException("timeout"));
+
+        dispatcher.dispatch();
+
+        assertEquals(ValidationOutbox.Status.FAILED, outbox.getStatus());
+        assertEquals("timeout", outbox.getLastError());
+    }
+
+    // 4 : bail repris par une autre instance pendant le lot : la demande n'est pas envoyée en double
+    @Test
+    void testDispatch_SkipsWhenLeaseLost() {
+        ValidationOutbox outbox = pending(0);
+        when(outboxRepository.lockDue(eq(ValidationOutbox.Status.PENDING), any(Instant.class), any())).thenReturn(List.of(outbox));
+        when(outboxRepository.renewLease(eq(1L), any(), eq(ValidationOutbox.Status.PENDING), any())).thenReturn(0);
+
+        dispatcher.dispatch();
+
+        verifyNoInteractions(validationRestClient);
+        verify(outboxRepository, never()).save(any());
+        assertEquals(1.0, meterRegistry.get("security.validation.outbox.dispatched").tag("result", "lease-lost").counter().count());
+    }
+
+    private static ValidationOutbox pending(int attempts) {
+        return ValidationOutbox.builder()
+                .id(1L)
+                .reference(UUID.randomUUID())
+                .userId(4L)
+                .email("user@test.com")
+                .type("deviceId")
+                .status(ValidationOutbox.Status.PENDING)
+                .attempts(attempts)
+                .nextAttemptAt(Instant.now())
+                .build();
+    }
+}